@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.frame.VirtualFrame;
+import com.oracle.truffle.api.instrumentation.EventBinding;
+import com.oracle.truffle.api.instrumentation.ExecutionEventNode;
+import com.oracle.truffle.api.instrumentation.SourceSectionFilter;
+import com.oracle.truffle.api.instrumentation.StandardTags;
+import com.oracle.truffle.api.source.SourceSection;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accounts allocated bytes and CPU time between entry and exit of a
+ * function or of the statements at a location. The totals are written
+ * out as a trace when the hook is detached or the context disposed.
+ */
+final class DbgAccount implements DbgHook {
+    static final List<DbgAtWatch> SUMMARY = Arrays.asList(
+        new DbgAtWatch("calls", null),
+        new DbgAtWatch("allocatedKiB", null),
+        new DbgAtWatch("cpuMicros", null)
+    );
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final DbgAt at;
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+    private DbgContext context;
+
+    DbgAccount(DbgAt at) {
+        this.at = at;
+    }
+
+    @Override
+    public Object attach(DbgContext context, Object insight) {
+        this.context = context;
+        Class<?> tag = at.function != null ? StandardTags.RootTag.class : StandardTags.StatementTag.class;
+        return context.events().attachFactory(filter(at, tag), (ctx) -> {
+            SourceSection section = ctx.getInstrumentedSourceSection();
+            if (section == null) {
+                return null;
+            }
+            String src = section.getSource().getName();
+            int line = section.getStartLine();
+            return new Measure(counters.computeIfAbsent(src + ':' + line, (k) -> new Counters(src, line)));
+        });
+    }
+
+    /**
+     * Selects nodes of given tag in the named function or in the matching
+     * files and lines.
+     */
+    static SourceSectionFilter filter(DbgAt at, Class<?> tag) {
+        SourceSectionFilter.Builder filter = SourceSectionFilter.newBuilder().tagIs(tag).includeInternal(false);
+        if (at.function != null) {
+            filter.rootNameIs(at.function::equals);
+        } else {
+            DbgGlob glob = new DbgGlob(at.file);
+            int to = at.lastLine == Integer.MAX_VALUE ? Integer.MAX_VALUE : at.lastLine + 1;
+            filter.sourceIs((src) -> glob.matches(src.getName())).
+                lineStartsIn(SourceSectionFilter.IndexRange.between(at.line, to));
+        }
+        return filter.build();
+    }
+
+    @Override
+    public void detach(Object handle) {
+        ((EventBinding<?>) handle).dispose();
+        summary();
+    }
+
+    @Override
+    public Collection<DbgAt> watchpoints() {
+        return Collections.singleton(at);
+    }
+
+    /**
+     * Writes the totals of each location as a record with {@code calls},
+     * {@code allocatedKiB} and {@code cpuMicros}.
+     */
+    @Override
+    public void summary() {
+        for (Counters c : counters.values()) {
+            Object[] values = {
+                saturate(c.calls.sum()),
+                saturate(c.bytes.sum() / 1024),
+                saturate(c.cpu.sum() / 1000),
+            };
+            context.sink.record(c.src, c.line, SUMMARY, values);
+        }
+    }
+
+    private static int saturate(long value) {
+        return (int) Math.min(value, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int hashCode() {
+        return at.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof DbgAccount && at.equals(((DbgAccount) obj).at);
+    }
+
+    @CompilerDirectives.TruffleBoundary
+    static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return 0;
+    }
+
+    @CompilerDirectives.TruffleBoundary
+    static long cpuTime() {
+        if (THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled()) {
+            return THREADS.getCurrentThreadCpuTime();
+        }
+        return 0;
+    }
+
+    /**
+     * Totals of a location. Striped adders keep threads from contending.
+     * Recursive entries are counted as calls, but measured only once.
+     */
+    static final class Counters {
+        final String src;
+        final int line;
+        final LongAdder calls = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder cpu = new LongAdder();
+        private final ThreadLocal<long[]> active = ThreadLocal.withInitial(() -> new long[3]);
+
+        Counters(String src, int line) {
+            this.src = src;
+            this.line = line;
+        }
+
+        @CompilerDirectives.TruffleBoundary
+        void enter() {
+            calls.increment();
+            long[] state = active.get();
+            if (state[0]++ == 0) {
+                state[1] = allocatedBytes();
+                state[2] = cpuTime();
+            }
+        }
+
+        @CompilerDirectives.TruffleBoundary
+        void exit() {
+            long[] state = active.get();
+            if (state[0] > 0 && --state[0] == 0) {
+                bytes.add(allocatedBytes() - state[1]);
+                cpu.add(cpuTime() - state[2]);
+            }
+        }
+    }
+
+    private final class Measure extends ExecutionEventNode {
+        private final Counters counters;
+
+        Measure(Counters counters) {
+            this.counters = counters;
+        }
+
+        @Override
+        protected void onEnter(VirtualFrame frame) {
+            if (at.isEnabled()) {
+                at.countHit();
+                counters.enter();
+            }
+        }
+
+        @Override
+        protected void onReturnValue(VirtualFrame frame, Object result) {
+            counters.exit();
+        }
+
+        @Override
+        protected void onReturnExceptional(VirtualFrame frame, Throwable exception) {
+            counters.exit();
+        }
+    }
+}
@@ -40,54 +40,131 @@
  */
 package org.graalvm.tools.debuglang;
 
-import com.oracle.truffle.api.CallTarget;
+import com.oracle.truffle.api.Assumption;
 import com.oracle.truffle.api.CompilerDirectives;
-import com.oracle.truffle.api.TruffleLanguage;
-import com.oracle.truffle.api.dsl.Cached;
-import com.oracle.truffle.api.dsl.CachedContext;
+import com.oracle.truffle.api.Truffle;
 import com.oracle.truffle.api.interop.InteropException;
 import com.oracle.truffle.api.interop.InteropLibrary;
 import com.oracle.truffle.api.interop.TruffleObject;
-import com.oracle.truffle.api.library.CachedLibrary;
+import com.oracle.truffle.api.interop.UnknownIdentifierException;
 import com.oracle.truffle.api.library.ExportLibrary;
 import com.oracle.truffle.api.library.ExportMessage;
-import java.io.IOException;
-import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * A watchpoint. Polyglot code can read its {@code location},
+ * {@code enabled} state and number of {@code hits} and invoke
+ * {@code enable} or {@code disable}.
+ */
 @ExportLibrary(value = InteropLibrary.class)
 final class DbgAt implements TruffleObject {
+    private static final String[] MEMBERS = { "location", "enabled", "hits", "enable", "disable" };
 
     final String file;
     final int line;
+    final int lastLine;
+    final String function;
+    final boolean onReturn;
+    final boolean onException;
     final List<DbgAtWatch> actions;
+    final boolean dump;
+    final boolean account;
+    final boolean count;
+    private final boolean all;
+    /** cached, the budget hashes the location on each recorded hit */
+    private int hash;
+    private final LongAdder hits = new LongAdder();
+    @CompilerDirectives.CompilationFinal
+    private volatile boolean enabled = true;
     @CompilerDirectives.CompilationFinal
-    private CallTarget target;
+    private volatile Assumption enabledUnchanged = Truffle.getRuntime().createAssumption("DbgAt enabled");
 
     DbgAt(String file, int line, List<DbgAtWatch> actions) {
+        this(file, line, line, actions, false);
+    }
+
+    DbgAt(String file, int line, int lastLine, List<DbgAtWatch> actions, boolean dump) {
+        this(file, line, lastLine, null, false, false, actions, dump, false, false);
+    }
+
+    private DbgAt(String file, int line, int lastLine, String function, boolean onReturn, boolean onException, List<DbgAtWatch> actions, boolean dump, boolean account, boolean count) {
         this.file = file;
         this.line = line;
+        this.lastLine = lastLine;
+        this.function = function;
+        this.onReturn = onReturn;
+        this.onException = onException;
         this.actions = actions;
+        this.dump = dump;
+        this.account = account;
+        this.count = count;
+        this.all = containsAll(actions);
     }
 
-    final void register(Object argument) {
-        InteropLibrary iop = InteropLibrary.getFactory().getUncached();
-        try {
-            iop.invokeMember(argument, "on", "enter", this, this);
-        } catch (InteropException ex) {
-            throw DbgLanguage.raise(RuntimeException.class, ex);
+    private static boolean containsAll(List<DbgAtWatch> actions) {
+        for (DbgAtWatch w : actions) {
+            if (w.isAll()) {
+                return true;
+            }
         }
+        return false;
+    }
+
+    static DbgAt function(String function, boolean onReturn, List<DbgAtWatch> actions, boolean dump) {
+        return new DbgAt(null, 0, 0, function, onReturn, false, actions, dump, false, false);
+    }
+
+    /**
+     * Watchpoint recording the locals of a function an exception propagates
+     * through.
+     */
+    static DbgAt exception(String function, List<DbgAtWatch> actions, boolean dump) {
+        return new DbgAt(null, 0, 0, function, false, true, actions, dump, false, false);
+    }
+
+    /**
+     * Location accounting allocated bytes and CPU time spent between its
+     * entry and exit.
+     */
+    static DbgAt account(String file, int line, int lastLine, String function) {
+        return new DbgAt(file, line, lastLine, function, false, false, Collections.emptyList(), false, true, false);
+    }
+
+    /**
+     * Location counting hits of its statements per line.
+     */
+    static DbgAt count(String file, int line, int lastLine, String function) {
+        return new DbgAt(file, line, lastLine, function, false, false, Collections.emptyList(), false, false, true);
     }
 
     @Override
     public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = computeHash();
+            hash = h;
+        }
+        return h;
+    }
+
+    private int computeHash() {
         int hash = 3;
         hash = 67 * hash + Objects.hashCode(this.file);
         hash = 67 * hash + this.line;
+        hash = 67 * hash + this.lastLine;
+        hash = 67 * hash + Objects.hashCode(this.function);
+        hash = 67 * hash + (this.onReturn ? 1 : 0);
+        hash = 67 * hash + (this.onException ? 1 : 0);
+        hash = 67 * hash + (this.dump ? 1 : 0);
+        hash = 67 * hash + (this.account ? 1 : 0);
+        hash = 67 * hash + (this.count ? 1 : 0);
         for (DbgAtWatch w : this.actions) {
             hash = 67 * hash + w.variableName.hashCode();
         }
@@ -106,110 +183,155 @@ final class DbgAt implements TruffleObject {
             return false;
         }
         final DbgAt other = (DbgAt) obj;
+        if (this.line != other.line || this.lastLine != other.lastLine || this.dump != other.dump || !Objects.equals(this.file, other.file)) {
+            return false;
+        }
+        if (this.onReturn != other.onReturn || this.onException != other.onException || this.account != other.account || this.count != other.count || !Objects.equals(this.function, other.function)) {
+            return false;
+        }
         return variableNames(this.actions).equals(variableNames(other.actions));
     }
 
-    static Set<String> variableNames(List<DbgAtWatch> all) {
-        Set<String> set = new HashSet<>();
-        for (DbgAtWatch w : all) {
-            set.add(w.variableName);
+    @Override
+    public String toString() {
+        if (function != null) {
+            return account || count ? "function " + function : "function " + function + " on " + (onException ? "exception" : onReturn ? "return" : "enter");
         }
-        return set;
+        if (line == 1 && lastLine == Integer.MAX_VALUE) {
+            return file + ":*";
+        }
+        if (line != lastLine) {
+            return file + ":" + line + "-" + lastLine;
+        }
+        return file + ":" + line;
     }
 
-    static String findSrc(Object[] args) {
-        try {
-            InteropLibrary iop = InteropLibrary.getFactory().getUncached();
-            Object src = iop.readMember(args[0], "source");
-            return iop.asString(iop.readMember(src, "name"));
-        } catch (InteropException ex) {
-            throw DbgLanguage.raise(RuntimeException.class, ex);
+    /**
+     * Compiled code treats the state as a constant. Changing it invalidates
+     * only the code that checked this watchpoint.
+     */
+    boolean isEnabled() {
+        if (!enabledUnchanged.isValid()) {
+            CompilerDirectives.transferToInterpreterAndInvalidate();
         }
+        return enabled;
     }
 
-    static int findLine(Object[] args) {
-        try {
-            InteropLibrary iop = InteropLibrary.getFactory().getUncached();
-            return iop.asInt(iop.readMember(args[0], "line"));
-        } catch (InteropException ex) {
-            throw DbgLanguage.raise(RuntimeException.class, ex);
+    synchronized void setEnabled(boolean enabled) {
+        if (this.enabled == enabled) {
+            return;
         }
+        Assumption old = enabledUnchanged;
+        this.enabled = enabled;
+        this.enabledUnchanged = Truffle.getRuntime().createAssumption("DbgAt enabled");
+        old.invalidate();
     }
 
-    @ExportMessage
-    Object execute(Object[] args, @CachedContext(value = DbgLanguage.class) TruffleLanguage.Env context, @CachedLibrary(limit = "3") InteropLibrary frameLib, @Cached(value = "findSrc(args)", allowUncached = true) String src, @Cached(value = "findLine(args)", allowUncached = true) int line) {
-        if (this.line != line) {
-            return this;
-        }
-        Object frame = args[1];
-        boolean first = true;
-        for (DbgAtWatch w : actions) {
-            Object value;
-            try {
-                value = frameLib.readMember(frame, w.variableName);
-            } catch (InteropException ex) {
-                continue;
-            }
-            if (first) {
-                dumpPrologue(context, src, line);
-                first = false;
-            }
-            dumpWatch(context, w, value);
-        }
-        return this;
+    Assumption enabledAssumption() {
+        return enabledUnchanged;
     }
 
-    @CompilerDirectives.TruffleBoundary
-    private void dumpPrologue(TruffleLanguage.Env context, String src, int line1) {
-        final String msg = String.format("at %s:%d\n", src, line1);
-        try {
-            final OutputStream out = context.out();
-            out.write(msg.getBytes(StandardCharsets.UTF_8));
-            out.flush();
-        } catch (IOException ex) {
-            ex.printStackTrace();
+    long hits() {
+        return hits.sum();
+    }
+
+    void countHit() {
+        hits.increment();
+    }
+
+    static Set<String> variableNames(List<DbgAtWatch> all) {
+        Set<String> set = new HashSet<>();
+        for (DbgAtWatch w : all) {
+            set.add(w.variableName);
         }
+        return set;
     }
+
+    /**
+     * Watches to record in given frame. {@code watch *} is expanded to all
+     * members of the frame. Frames at the same location have the same
+     * members, so callers compute the watches once per location and cache them.
+     */
     @CompilerDirectives.TruffleBoundary
-    private void dumpWatch(TruffleLanguage.Env context, DbgAtWatch w, Object value) {
-        final String msg = String.format("  watch %s = %s\n", w.variableName, value);
+    List<DbgAtWatch> watches(Object frame) {
+        if (!all) {
+            return actions;
+        }
+        Set<String> names = new LinkedHashSet<>();
+        List<DbgAtWatch> watches = new ArrayList<>();
+        for (DbgAtWatch w : actions) {
+            if (!w.isAll() && names.add(w.variableName)) {
+                watches.add(w);
+            }
+        }
+        InteropLibrary iop = InteropLibrary.getFactory().getUncached();
         try {
-            final OutputStream out = context.out();
-            out.write(msg.getBytes(StandardCharsets.UTF_8));
-            out.flush();
-        } catch (IOException ex) {
-            ex.printStackTrace();
+            Object keys = iop.getMembers(frame);
+            long size = iop.getArraySize(keys);
+            for (long i = 0; i < size; i++) {
+                String name = iop.asString(iop.readArrayElement(keys, i));
+                if (names.add(name)) {
+                    watches.add(DbgAtWatch.expanded(name));
+                }
+            }
+        } catch (InteropException ex) {
+            // no members to record
         }
+        return watches;
+    }
+
+    static boolean matchesFile(String file, String name) {
+        return name.equals(file) || name.endsWith("/" + file);
     }
 
     @ExportMessage
-    boolean isExecutable() {
+    boolean hasMembers() {
         return true;
     }
 
     @ExportMessage
-    Object readMember(String member) {
-        return "statements".equals(member);
+    Object getMembers(boolean include) {
+        return this;
     }
 
     @ExportMessage
     boolean isMemberReadable(String member) {
-        return true;
+        return "location".equals(member) || "enabled".equals(member) || "hits".equals(member);
     }
 
     @ExportMessage
-    boolean hasMembers() {
-        return true;
+    @CompilerDirectives.TruffleBoundary
+    Object readMember(String member) throws UnknownIdentifierException {
+        switch (member) {
+            case "location":
+                return toString();
+            case "enabled":
+                return enabled;
+            case "hits":
+                return hits();
+            default:
+                throw UnknownIdentifierException.create(member);
+        }
     }
 
     @ExportMessage
-    Object getMembers(boolean include) {
+    boolean isMemberInvocable(String member) {
+        return "enable".equals(member) || "disable".equals(member);
+    }
+
+    @ExportMessage
+    @CompilerDirectives.TruffleBoundary
+    Object invokeMember(String member, Object[] args) throws UnknownIdentifierException {
+        if (!isMemberInvocable(member)) {
+            throw UnknownIdentifierException.create(member);
+        }
+        setEnabled("enable".equals(member));
         return this;
     }
 
     @ExportMessage
     Object readArrayElement(long index) {
-        return "statements";
+        return MEMBERS[(int) index];
     }
 
     @ExportMessage
@@ -219,19 +341,11 @@ final class DbgAt implements TruffleObject {
 
     @ExportMessage
     long getArraySize() {
-        return 1;
+        return MEMBERS.length;
     }
 
     @ExportMessage
     boolean isArrayElementReadable(long index) {
-        return true;
-    }
-
-    void assignTarget(CallTarget target) {
-        this.target = target;
-    }
-
-    void replay() {
-        target.call(this);
+        return index >= 0 && index < MEMBERS.length;
     }
 }
@@ -0,0 +1,472 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.Scope;
+import com.oracle.truffle.api.TruffleException;
+import com.oracle.truffle.api.TruffleStackTrace;
+import com.oracle.truffle.api.TruffleStackTraceElement;
+import com.oracle.truffle.api.dsl.Cached;
+import com.oracle.truffle.api.dsl.CachedContext;
+import com.oracle.truffle.api.frame.MaterializedFrame;
+import com.oracle.truffle.api.frame.VirtualFrame;
+import com.oracle.truffle.api.instrumentation.EventBinding;
+import com.oracle.truffle.api.instrumentation.EventContext;
+import com.oracle.truffle.api.instrumentation.ExecutionEventNode;
+import com.oracle.truffle.api.instrumentation.ExecutionEventNodeFactory;
+import com.oracle.truffle.api.instrumentation.SourceSectionFilter;
+import com.oracle.truffle.api.instrumentation.StandardTags;
+import com.oracle.truffle.api.interop.InteropException;
+import com.oracle.truffle.api.interop.InteropLibrary;
+import com.oracle.truffle.api.interop.TruffleObject;
+import com.oracle.truffle.api.interop.UnknownIdentifierException;
+import com.oracle.truffle.api.library.ExportLibrary;
+import com.oracle.truffle.api.library.ExportMessage;
+import com.oracle.truffle.api.nodes.Node;
+import com.oracle.truffle.api.source.SourceSection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.regex.Pattern;
+
+/**
+ * Watchpoint on enter, return or exception of a named function. Enter is
+ * registered as an Insight root hook. Insight doesn't deliver return values
+ * nor exceptions, so these are observed by {@link DbgEventsInstrument}. The
+ * returned value is readable as {@value #RESULT}. An exception is recorded
+ * at the line it was thrown from or passed through.
+ */
+@ExportLibrary(value = InteropLibrary.class)
+final class DbgAtFunction implements DbgHook, TruffleObject {
+    static final String RESULT = "result";
+    private static final String[] MEMBERS = { "roots", "rootNameFilter" };
+
+    private final DbgAt at;
+
+    DbgAtFunction(DbgAt at) {
+        this.at = at;
+    }
+
+    @Override
+    public Object attach(DbgContext context, Object insight) {
+        if (at.onReturn || at.onException) {
+            DbgEventsInstrument events = context.env.lookup(context.env.getInstruments().get(DbgEventsInstrument.ID), DbgEventsInstrument.class);
+            SourceSectionFilter roots = SourceSectionFilter.newBuilder().
+                tagIs(StandardTags.RootTag.class).
+                rootNameIs(at.function::equals).
+                includeInternal(false).
+                build();
+            return events.attachFactory(roots, new Return(events));
+        }
+        InteropLibrary iop = InteropLibrary.getFactory().getUncached();
+        try {
+            iop.invokeMember(insight, "on", "enter", this, this);
+        } catch (InteropException ex) {
+            throw DbgLanguage.raise(RuntimeException.class, ex);
+        }
+        return insight;
+    }
+
+    @Override
+    public void detach(Object handle) {
+        if (handle instanceof EventBinding) {
+            ((EventBinding<?>) handle).dispose();
+            return;
+        }
+        InteropLibrary iop = InteropLibrary.getFactory().getUncached();
+        try {
+            iop.invokeMember(handle, "off", "enter", this);
+        } catch (InteropException ex) {
+            throw DbgLanguage.raise(RuntimeException.class, ex);
+        }
+    }
+
+    @Override
+    public Collection<DbgAt> watchpoints() {
+        return Collections.singleton(at);
+    }
+
+    @Override
+    public int hashCode() {
+        return at.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof DbgAtFunction && at.equals(((DbgAtFunction) obj).at);
+    }
+
+    @ExportMessage
+    Object execute(Object[] args,
+        @CachedContext(value = DbgLanguage.class) DbgContext context,
+        @Cached(value = "findSrc(args)", allowUncached = true) String src,
+        @Cached(value = "findLine(args)", allowUncached = true) int line,
+        @Cached(value = "this.createHit(args)", uncached = "this.createUncachedHit(args)") DbgHitNode hit
+    ) {
+        hit.execute(context, args[1], src, line);
+        return this;
+    }
+
+    static String findSrc(Object[] args) {
+        return DbgAtGroup.findSrc(args);
+    }
+
+    static int findLine(Object[] args) {
+        return DbgAtGroup.findLine(args);
+    }
+
+    DbgHitNode createHit(Object[] args) {
+        return DbgHitNode.create(at, args[1]);
+    }
+
+    DbgHitNode createUncachedHit(Object[] args) {
+        return DbgHitNode.createUncached(at, args[1]);
+    }
+
+    @ExportMessage
+    boolean isExecutable() {
+        return true;
+    }
+
+    @ExportMessage
+    Object readMember(String member) {
+        if ("rootNameFilter".equals(member)) {
+            return Pattern.quote(at.function);
+        }
+        return "roots".equals(member);
+    }
+
+    @ExportMessage
+    boolean isMemberReadable(String member) {
+        return true;
+    }
+
+    @ExportMessage
+    boolean hasMembers() {
+        return true;
+    }
+
+    @ExportMessage
+    Object getMembers(boolean include) {
+        return this;
+    }
+
+    @ExportMessage
+    Object readArrayElement(long index) {
+        return MEMBERS[(int) index];
+    }
+
+    @ExportMessage
+    boolean hasArrayElements() {
+        return true;
+    }
+
+    @ExportMessage
+    long getArraySize() {
+        return MEMBERS.length;
+    }
+
+    @ExportMessage
+    boolean isArrayElementReadable(long index) {
+        return index >= 0 && index < MEMBERS.length;
+    }
+
+    private final class Return implements ExecutionEventNodeFactory {
+        private final DbgEventsInstrument events;
+        private final ThreadLocal<Unwind> unwinding = ThreadLocal.withInitial(Unwind::new);
+
+        Return(DbgEventsInstrument events) {
+            this.events = events;
+        }
+
+        @Override
+        public ExecutionEventNode create(EventContext ctx) {
+            SourceSection section = ctx.getInstrumentedSourceSection();
+            return section == null ? null : new ReturnNode(this, ctx, section);
+        }
+
+        /**
+         * Finds where in the unwound frame the exception was thrown or where
+         * the call it was thrown from was made. Frames of the function are
+         * unwound in the order of the stack trace, so the n-th unwound frame
+         * is the n-th element of the function in the trace.
+         */
+        @CompilerDirectives.TruffleBoundary
+        private SourceSection throwingSection(EventContext ctx, TruffleException exception) {
+            Unwind unwind = unwinding.get();
+            if (unwind.exception != exception) {
+                unwind.exception = exception;
+                unwind.frames = 0;
+            }
+            int frame = unwind.frames++;
+            List<TruffleStackTraceElement> trace = TruffleStackTrace.getStackTrace((Throwable) exception);
+            if (trace != null) {
+                for (TruffleStackTraceElement element : trace) {
+                    if (at.function.equals(element.getTarget().getRootNode().getName()) && frame-- == 0) {
+                        Node location = element.getLocation();
+                        SourceSection section = location == null ? null : location.getEncapsulatingSourceSection();
+                        if (section != null) {
+                            return section;
+                        }
+                        break;
+                    }
+                }
+            }
+            return ctx.getInstrumentedSourceSection();
+        }
+    }
+
+    /**
+     * Records returns of one instrumented root. The scope of each local and
+     * the reads of the watches are looked up at the first return and reused
+     * by the following ones.
+     */
+    private final class ReturnNode extends ExecutionEventNode {
+        private final Return events;
+        private final EventContext ctx;
+        private final String src;
+        private final int line;
+        private ReturnFrame.Layout layout;
+        @Child private DbgHitNode hit;
+
+        ReturnNode(Return events, EventContext ctx, SourceSection section) {
+            this.events = events;
+            this.ctx = ctx;
+            this.src = section.getSource().getName();
+            this.line = section.getStartLine();
+        }
+
+        @Override
+        protected void onReturnValue(VirtualFrame frame, Object result) {
+            if (!at.onException && at.isEnabled()) {
+                ReturnFrame locals = locals(frame.materialize(), result);
+                hit(locals).execute(DbgLanguage.getContext(), locals, src, line);
+            }
+        }
+
+        @Override
+        protected void onReturnExceptional(VirtualFrame frame, Throwable exception) {
+            if (at.onException && at.isEnabled() && exception instanceof TruffleException) {
+                SourceSection section = events.throwingSection(ctx, (TruffleException) exception);
+                if (section != null) {
+                    ReturnFrame locals = locals(frame.materialize(), null);
+                    hit(locals).execute(DbgLanguage.getContext(), locals, sourceName(section), startLine(section));
+                }
+            }
+        }
+
+        private DbgHitNode hit(ReturnFrame locals) {
+            if (hit == null) {
+                CompilerDirectives.transferToInterpreterAndInvalidate();
+                Lock lock = getLock();
+                lock.lock();
+                try {
+                    if (hit == null) {
+                        hit = insert(DbgHitNode.create(at, locals));
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return hit;
+        }
+
+        @CompilerDirectives.TruffleBoundary
+        private ReturnFrame locals(MaterializedFrame frame, Object result) {
+            List<Scope> scopes = new ArrayList<>();
+            for (Scope scope : events.events.findLocalScopes(ctx.getInstrumentedNode(), frame)) {
+                scopes.add(scope);
+            }
+            ReturnFrame.Layout l = layout;
+            if (l == null) {
+                layout = l = ReturnFrame.Layout.find(scopes, result != null);
+            }
+            return new ReturnFrame(scopes, result, l);
+        }
+    }
+
+    @CompilerDirectives.TruffleBoundary
+    private static String sourceName(SourceSection section) {
+        return section.getSource().getName();
+    }
+
+    @CompilerDirectives.TruffleBoundary
+    private static int startLine(SourceSection section) {
+        return section.getStartLine();
+    }
+
+    private static final class Unwind {
+        Object exception;
+        int frames;
+    }
+
+    @ExportLibrary(value = InteropLibrary.class)
+    static final class ReturnFrame implements TruffleObject {
+        private final List<Scope> scopes;
+        /** returned value or {@code null} when unwinding an exception */
+        private final Object result;
+        private final Layout layout;
+
+        ReturnFrame(List<Scope> scopes, Object result, Layout layout) {
+            this.scopes = scopes;
+            this.result = result;
+            this.layout = layout;
+        }
+
+        private List<String> names() {
+            return layout.names;
+        }
+
+        @ExportMessage
+        boolean hasMembers() {
+            return true;
+        }
+
+        @ExportMessage
+        Object getMembers(boolean include) {
+            return this;
+        }
+
+        @ExportMessage
+        boolean hasArrayElements() {
+            return true;
+        }
+
+        @ExportMessage
+        long getArraySize() {
+            return names().size();
+        }
+
+        @ExportMessage
+        boolean isArrayElementReadable(long index) {
+            return index >= 0 && index < getArraySize();
+        }
+
+        @ExportMessage
+        @CompilerDirectives.TruffleBoundary
+        Object readArrayElement(long index) {
+            return names().get((int) index);
+        }
+
+        @ExportMessage
+        @CompilerDirectives.TruffleBoundary
+        boolean isMemberReadable(String member) {
+            try {
+                readMember(member);
+                return true;
+            } catch (UnknownIdentifierException ex) {
+                return false;
+            }
+        }
+
+        @ExportMessage
+        @CompilerDirectives.TruffleBoundary
+        Object readMember(String member) throws UnknownIdentifierException {
+            if (RESULT.equals(member) && result != null) {
+                return result;
+            }
+            InteropLibrary iop = InteropLibrary.getFactory().getUncached();
+            int index = layout.scope(member);
+            if (index >= 0 && index < scopes.size()) {
+                try {
+                    return iop.readMember(scopes.get(index).getVariables(), member);
+                } catch (InteropException ex) {
+                    // not there this time, search all scopes
+                }
+            }
+            for (Scope scope : scopes) {
+                Object variables = scope.getVariables();
+                if (iop.isMemberReadable(variables, member)) {
+                    try {
+                        return iop.readMember(variables, member);
+                    } catch (InteropException ex) {
+                        // try outer scope
+                    }
+                }
+            }
+            throw UnknownIdentifierException.create(member);
+        }
+
+        /**
+         * Names of the locals at an instrumented node and the index of the
+         * scope each of them is found in. Frames of a node have the same
+         * scopes, so the layout is found once per node.
+         */
+        static final class Layout {
+            final List<String> names;
+            private final Map<String, Integer> scopes;
+
+            private Layout(List<String> names, Map<String, Integer> scopes) {
+                this.names = names;
+                this.scopes = scopes;
+            }
+
+            static Layout find(List<Scope> scopes, boolean result) {
+                Map<String, Integer> found = new LinkedHashMap<>();
+                if (result) {
+                    found.put(RESULT, -1);
+                }
+                InteropLibrary iop = InteropLibrary.getFactory().getUncached();
+                for (int index = 0; index < scopes.size(); index++) {
+                    try {
+                        Object keys = iop.getMembers(scopes.get(index).getVariables());
+                        for (long i = 0; i < iop.getArraySize(keys); i++) {
+                            found.putIfAbsent(iop.asString(iop.readArrayElement(keys, i)), index);
+                        }
+                    } catch (InteropException ex) {
+                        // no names in this scope
+                    }
+                }
+                return new Layout(new ArrayList<>(found.keySet()), found);
+            }
+
+            int scope(String name) {
+                Integer index = scopes.get(name);
+                return index == null ? -1 : index;
+            }
+        }
+    }
+}
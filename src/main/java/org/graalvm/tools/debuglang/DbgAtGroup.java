@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.dsl.Cached;
+import com.oracle.truffle.api.dsl.CachedContext;
+import com.oracle.truffle.api.interop.InteropException;
+import com.oracle.truffle.api.interop.InteropLibrary;
+import com.oracle.truffle.api.interop.TruffleObject;
+import com.oracle.truffle.api.library.ExportLibrary;
+import com.oracle.truffle.api.library.ExportMessage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * All locations sharing the same file pattern. They are registered into
+ * Insight as a single hook, which finds the locations of its line in an
+ * interval index once and caches them.
+ */
+@ExportLibrary(value = InteropLibrary.class)
+final class DbgAtGroup implements DbgHook, TruffleObject {
+    private static final String[] MEMBERS = { "statements", "sourceFilter" };
+
+    final String file;
+    private final Set<DbgAt> ats;
+    private final DbgGlob glob;
+    private final DbgLineIndex index;
+
+    DbgAtGroup(String file, Set<DbgAt> ats) {
+        this.file = file;
+        this.ats = ats;
+        this.glob = new DbgGlob(file);
+        this.index = new DbgLineIndex(ats);
+    }
+
+    static Collection<DbgAtGroup> group(List<DbgAt> statements) {
+        Map<String, Set<DbgAt>> byFile = new LinkedHashMap<>();
+        for (DbgAt at : statements) {
+            if (at.function != null || at.account || at.count) {
+                continue;
+            }
+            byFile.computeIfAbsent(at.file, (f) -> new LinkedHashSet<>()).add(at);
+        }
+        List<DbgAtGroup> groups = new ArrayList<>(byFile.size());
+        for (Map.Entry<String, Set<DbgAt>> e : byFile.entrySet()) {
+            groups.add(new DbgAtGroup(e.getKey(), e.getValue()));
+        }
+        return groups;
+    }
+
+    @Override
+    public Object attach(DbgContext context, Object insight) {
+        InteropLibrary iop = InteropLibrary.getFactory().getUncached();
+        try {
+            iop.invokeMember(insight, "on", "enter", this, this);
+        } catch (InteropException ex) {
+            throw DbgLanguage.raise(RuntimeException.class, ex);
+        }
+        return insight;
+    }
+
+    @Override
+    public void detach(Object insight) {
+        InteropLibrary iop = InteropLibrary.getFactory().getUncached();
+        try {
+            iop.invokeMember(insight, "off", "enter", this);
+        } catch (InteropException ex) {
+            throw DbgLanguage.raise(RuntimeException.class, ex);
+        }
+    }
+
+    @Override
+    public Collection<DbgAt> watchpoints() {
+        return ats;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * file.hashCode() + ats.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final DbgAtGroup other = (DbgAtGroup) obj;
+        return file.equals(other.file) && ats.equals(other.ats);
+    }
+
+    static String findSrc(Object[] args) {
+        try {
+            InteropLibrary iop = InteropLibrary.getFactory().getUncached();
+            Object src = iop.readMember(args[0], "source");
+            return iop.asString(iop.readMember(src, "name"));
+        } catch (InteropException ex) {
+            throw DbgLanguage.raise(RuntimeException.class, ex);
+        }
+    }
+
+    static int findLine(Object[] args) {
+        try {
+            InteropLibrary iop = InteropLibrary.getFactory().getUncached();
+            return iop.asInt(iop.readMember(args[0], "line"));
+        } catch (InteropException ex) {
+            throw DbgLanguage.raise(RuntimeException.class, ex);
+        }
+    }
+
+    @CompilerDirectives.TruffleBoundary
+    DbgAt[] findAts(int line) {
+        return index.find(line);
+    }
+
+    static DbgHitNode.Site createSite(DbgAt[] found, Object[] args) {
+        return DbgHitNode.Site.create(found, args[1]);
+    }
+
+    static DbgHitNode.Site createUncachedSite(DbgAt[] found, Object[] args) {
+        return DbgHitNode.Site.createUncached(found, args[1]);
+    }
+
+    @ExportMessage
+    Object execute(Object[] args,
+        @CachedContext(value = DbgLanguage.class) DbgContext context,
+        @Cached(value = "findSrc(args)", allowUncached = true) String src,
+        @Cached(value = "findLine(args)", allowUncached = true) int line,
+        @Cached(value = "this.findAts(line)", allowUncached = true, dimensions = 1) DbgAt[] found,
+        @Cached(value = "createSite(found, args)", uncached = "createUncachedSite(found, args)") DbgHitNode.Site site
+    ) {
+        site.execute(context, args[1], src, line);
+        return this;
+    }
+
+    @ExportMessage
+    boolean isExecutable() {
+        return true;
+    }
+
+    @ExportMessage
+    Object readMember(String member) {
+        if ("sourceFilter".equals(member)) {
+            return new SourceFilter(glob);
+        }
+        return "statements".equals(member);
+    }
+
+    @ExportMessage
+    boolean isMemberReadable(String member) {
+        return true;
+    }
+
+    @ExportMessage
+    boolean hasMembers() {
+        return true;
+    }
+
+    @ExportMessage
+    Object getMembers(boolean include) {
+        return this;
+    }
+
+    @ExportMessage
+    Object readArrayElement(long index) {
+        return MEMBERS[(int) index];
+    }
+
+    @ExportMessage
+    boolean hasArrayElements() {
+        return true;
+    }
+
+    @ExportMessage
+    long getArraySize() {
+        return MEMBERS.length;
+    }
+
+    @ExportMessage
+    boolean isArrayElementReadable(long index) {
+        return index >= 0 && index < MEMBERS.length;
+    }
+
+    @ExportLibrary(value = InteropLibrary.class)
+    static final class SourceFilter implements TruffleObject {
+        private final DbgGlob glob;
+
+        SourceFilter(DbgGlob glob) {
+            this.glob = glob;
+        }
+
+        @ExportMessage
+        boolean isExecutable() {
+            return true;
+        }
+
+        @ExportMessage
+        @CompilerDirectives.TruffleBoundary
+        Object execute(Object[] args) {
+            try {
+                InteropLibrary iop = InteropLibrary.getFactory().getUncached();
+                String name = iop.asString(iop.readMember(args[0], "name"));
+                return glob.matches(name);
+            } catch (InteropException ex) {
+                return false;
+            }
+        }
+    }
+}
@@ -41,13 +41,42 @@
 package org.graalvm.tools.debuglang;
 
 final class DbgAtWatch {
+    /** Name of the watch recording all members of the frame. */
+    static final String ALL = "*";
 
     final String variableName;
     final Integer value;
+    final String[] path;
+    /** expanded from {@code watch *}; records only values a trace can replay */
+    final boolean expanded;
 
     public DbgAtWatch(String variableName, Integer value) {
+        this(variableName, value, false);
+    }
+
+    private DbgAtWatch(String variableName, Integer value, boolean expanded) {
         this.variableName = variableName;
         this.value = value;
+        this.path = expanded ? new String[] { variableName } : splitPath(variableName);
+        this.expanded = expanded;
+    }
+
+    static DbgAtWatch expanded(String member) {
+        return new DbgAtWatch(member, null, true);
+    }
+
+    boolean isAll() {
+        return !expanded && ALL.equals(variableName);
+    }
+
+    private static String[] splitPath(String name) {
+        String[] path = name.split("\\.", -1);
+        for (String step : path) {
+            if (step.isEmpty()) {
+                return new String[] { name };
+            }
+        }
+        return path;
     }
 
 }
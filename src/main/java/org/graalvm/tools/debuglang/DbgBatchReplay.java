@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.frame.Frame;
+import com.oracle.truffle.api.frame.FrameSlot;
+import com.oracle.truffle.api.frame.VirtualFrame;
+import com.oracle.truffle.api.instrumentation.EventContext;
+import com.oracle.truffle.api.instrumentation.ExecutionEventListener;
+import com.oracle.truffle.api.instrumentation.SourceSectionFilter;
+import com.oracle.truffle.api.instrumentation.StandardTags;
+import com.oracle.truffle.api.nodes.RootNode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.Source;
+
+/**
+ * Replays many traces concurrently. Each trace gets its own context, all of
+ * them share one engine and thus the parsed programs and compiled replay
+ * roots. Instead of suspending in a debugger every replayed record is handed
+ * to an {@link Analysis}.
+ */
+public final class DbgBatchReplay implements AutoCloseable {
+    private final Engine engine;
+    private final ExecutorService pool;
+    private final ThreadLocal<Replay> current = new ThreadLocal<>();
+
+    public DbgBatchReplay(int threads) {
+        this.engine = Engine.create();
+        this.pool = Executors.newFixedThreadPool(threads, (r) -> {
+            Thread t = new Thread(r, "dbg-replay");
+            t.setDaemon(true);
+            return t;
+        });
+        DbgEventsInstrument events = engine.getInstruments().get(DbgEventsInstrument.ID).lookup(DbgEventsInstrument.class);
+        SourceSectionFilter statements = SourceSectionFilter.newBuilder().
+            tagIs(StandardTags.StatementTag.class).
+            sourceIs((src) -> "dbg".equals(src.getLanguage())).
+            build();
+        events.attachListener(statements, new Records());
+    }
+
+    /**
+     * Replays the traces and waits for all of them to finish. The analysis
+     * is called concurrently from multiple threads.
+     *
+     * @return failures of the traces that couldn't be replayed by their name
+     */
+    public Map<String, Throwable> replay(Collection<Source> traces, Analysis analysis) throws InterruptedException {
+        List<Future<?>> futures = new ArrayList<>(traces.size());
+        for (Source trace : traces) {
+            futures.add(pool.submit(() -> replay(trace, analysis)));
+        }
+        Map<String, Throwable> failures = new LinkedHashMap<>();
+        int i = 0;
+        for (Source trace : traces) {
+            try {
+                futures.get(i++).get();
+            } catch (ExecutionException ex) {
+                failures.put(trace.getName(), ex.getCause());
+            }
+        }
+        return failures;
+    }
+
+    private void replay(Source trace, Analysis analysis) {
+        current.set(new Replay(trace.getName(), analysis));
+        try (Context context = Context.newBuilder().engine(engine).allowIO(true).build()) {
+            context.eval(trace);
+        } finally {
+            current.remove();
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+        engine.close();
+    }
+
+    /**
+     * Receives replayed records.
+     */
+    @FunctionalInterface
+    public interface Analysis {
+        /**
+         * @param trace name of the replayed trace
+         * @param file the file of the record
+         * @param line the line of the record
+         * @param values recorded values by variable name
+         */
+        void record(String trace, String file, int line, Map<String, Object> values);
+    }
+
+    private static final class Replay {
+        final String trace;
+        final Analysis analysis;
+
+        Replay(String trace, Analysis analysis) {
+            this.trace = trace;
+            this.analysis = analysis;
+        }
+    }
+
+    private final class Records implements ExecutionEventListener {
+        @Override
+        public void onEnter(EventContext ctx, VirtualFrame frame) {
+            record(ctx, frame.materialize());
+        }
+
+        @Override
+        public void onReturnValue(EventContext ctx, VirtualFrame frame, Object result) {
+        }
+
+        @Override
+        public void onReturnExceptional(EventContext ctx, VirtualFrame frame, Throwable exception) {
+        }
+
+        @CompilerDirectives.TruffleBoundary
+        private void record(EventContext ctx, Frame frame) {
+            Replay replay = current.get();
+            RootNode root = ctx.getInstrumentedNode().getRootNode();
+            if (replay == null || !(root instanceof DbgNodeAt)) {
+                return;
+            }
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (FrameSlot slot : frame.getFrameDescriptor().getSlots()) {
+                Object value = frame.getValue(slot);
+                if (value != null) {
+                    values.put(slot.getIdentifier().toString(), value);
+                }
+            }
+            DbgNodeAt at = (DbgNodeAt) root;
+            replay.analysis.record(replay.trace, at.getFile(), at.getLine(), Collections.unmodifiableMap(values));
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.TruffleLogger;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the cost of recording within a share of wall time and an output
+ * rate. The cost is evaluated once per window. Locations that recorded in an
+ * exceeded window sample fewer hits. When even the sparsest sampling doesn't
+ * help, recording is suspended for a window and then resumed with every hit
+ * sampled. The state is kept per context, as the locations are shared by all
+ * contexts of an engine. Recording threads only add to striped counters; the
+ * lock is taken when the window ends.
+ */
+final class DbgBudget {
+    private static final TruffleLogger LOG = TruffleLogger.getLogger("dbg", DbgBudget.class);
+    static final long WINDOW = TimeUnit.SECONDS.toNanos(1);
+    static final int MAX_SAMPLING = 1 << 16;
+
+    final boolean enabled;
+    private final double timeShare;
+    private final long bytesPerSecond;
+    private final Set<DbgAt> recorded = ConcurrentHashMap.newKeySet();
+    private final Map<DbgAt, Sampling> throttled = new ConcurrentHashMap<>();
+    private final LongAdder spentNanos = new LongAdder();
+    private final LongAdder writtenBytes = new LongAdder();
+    private volatile long windowStart;
+    private volatile boolean suspended;
+    private volatile boolean throttling;
+
+    DbgBudget(double overheadPercent, long bytesPerSecond, long now) {
+        this.timeShare = overheadPercent / 100.0;
+        this.bytesPerSecond = bytesPerSecond;
+        this.enabled = overheadPercent > 0 || bytesPerSecond > 0;
+        this.windowStart = now;
+    }
+
+    boolean sample(DbgAt at) {
+        if (!enabled) {
+            return true;
+        }
+        if (suspended) {
+            return resume(System.nanoTime());
+        }
+        return !throttling || sampleThrottled(at);
+    }
+
+    @CompilerDirectives.TruffleBoundary
+    private boolean sampleThrottled(DbgAt at) {
+        Sampling s = throttled.get(at);
+        return s == null || s.sample();
+    }
+
+    @CompilerDirectives.TruffleBoundary
+    synchronized boolean resume(long now) {
+        if (suspended && now - windowStart >= WINDOW) {
+            suspended = false;
+            spentNanos.reset();
+            writtenBytes.reset();
+            // charge runs too rarely at the sparsest sampling to relax it,
+            // the next window throttles again if still needed
+            throttled.clear();
+            throttling = false;
+            startWindow(now);
+            LOG.info("Recording resumed");
+        }
+        return !suspended;
+    }
+
+    @CompilerDirectives.TruffleBoundary
+    void charge(DbgAt at, long nanos, long bytes, long now) {
+        spentNanos.add(nanos);
+        writtenBytes.add(bytes);
+        if (!recorded.contains(at)) {
+            recorded.add(at);
+        }
+        if (now - windowStart >= WINDOW) {
+            endWindow(now);
+        }
+    }
+
+    private synchronized void endWindow(long now) {
+        long elapsed = now - windowStart;
+        if (elapsed >= WINDOW) {
+            evaluate(elapsed, spentNanos.sumThenReset(), writtenBytes.sumThenReset());
+            startWindow(now);
+        }
+    }
+
+    boolean isSuspended() {
+        return suspended;
+    }
+
+    private void evaluate(long elapsed, long spentNanos, long writtenBytes) {
+        double ratio = 0;
+        if (timeShare > 0) {
+            ratio = Math.max(ratio, spentNanos / (elapsed * timeShare));
+        }
+        if (bytesPerSecond > 0) {
+            ratio = Math.max(ratio, writtenBytes * (double) WINDOW / (elapsed * (double) bytesPerSecond));
+        }
+        if (ratio > 1.0) {
+            int factor = Math.max(2, (int) Math.ceil(ratio));
+            for (DbgAt at : recorded) {
+                int sampling = throttled.computeIfAbsent(at, (k) -> new Sampling()).throttle(factor);
+                throttling = true;
+                LOG.info(String.format("Over budget %.0f%%: recording every %d. hit at %s", ratio * 100, sampling, at));
+                if (sampling >= MAX_SAMPLING) {
+                    suspended = true;
+                }
+            }
+            if (suspended) {
+                LOG.warning(String.format("Over budget %.0f%%: recording suspended", ratio * 100));
+            }
+        } else if (ratio < 0.5 && !throttled.isEmpty()) {
+            for (Map.Entry<DbgAt, Sampling> entry : throttled.entrySet()) {
+                DbgAt at = entry.getKey();
+                int sampling = entry.getValue().relax();
+                LOG.info(String.format("Under budget %.0f%%: recording every %d. hit at %s", ratio * 100, sampling, at));
+                if (sampling == 1) {
+                    throttled.remove(at);
+                }
+            }
+            throttling = !throttled.isEmpty();
+        }
+    }
+
+    private void startWindow(long now) {
+        windowStart = now;
+        recorded.clear();
+    }
+
+    private static final class Sampling {
+        private int every = 1;
+        private int skipped;
+
+        boolean sample() {
+            if (++skipped < every) {
+                return false;
+            }
+            skipped = 0;
+            return true;
+        }
+
+        int throttle(int factor) {
+            every = (int) Math.min((long) every * factor, MAX_SAMPLING);
+            return every;
+        }
+
+        int relax() {
+            every = Math.max(1, every / 2);
+            return every;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Receives traces streamed by {@code --dbg.Collector} and appends them to a
+ * replayable {@code .dbg} file.
+ * <pre>
+ * $ java -cp debuglang.jar org.graalvm.tools.debuglang.DbgCollector 7070 log.dbg
+ * </pre>
+ */
+public final class DbgCollector implements Closeable {
+    static final int WINDOW = 256;
+    private static final int MAX_FRAME = 64 << 20;
+
+    private final ServerSocket server;
+    private final OutputStream out;
+    private final List<Socket> clients = new ArrayList<>();
+
+    public DbgCollector(int port, Path file) throws IOException {
+        this.out = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+        this.server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "dbg-collector-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public static void main(String... args) throws IOException, InterruptedException {
+        if (args.length != 2) {
+            System.err.println("Usage: DbgCollector port log.dbg");
+            System.exit(1);
+        }
+        new DbgCollector(Integer.parseInt(args[0]), Paths.get(args[1]));
+        Thread.currentThread().join();
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket client = server.accept();
+                synchronized (clients) {
+                    clients.add(client);
+                }
+                Thread t = new Thread(() -> serve(client), "dbg-collector-client");
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException ex) {
+                // closed
+            }
+        }
+    }
+
+    private void serve(Socket client) {
+        try (Socket c = client) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(c.getInputStream()));
+            DataOutputStream credits = new DataOutputStream(c.getOutputStream());
+            credits.writeInt(WINDOW);
+            credits.flush();
+            int stored = 0;
+            for (;;) {
+                int length = in.readInt();
+                if (length < 0 || length > MAX_FRAME) {
+                    return;
+                }
+                byte[] frame = new byte[length];
+                in.readFully(frame);
+                stored++;
+                if (in.available() == 0 || stored == WINDOW) {
+                    synchronized (out) {
+                        out.write(frame);
+                        out.flush();
+                    }
+                    credits.writeInt(stored);
+                    credits.flush();
+                    stored = 0;
+                } else {
+                    synchronized (out) {
+                        out.write(frame);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            // client gone
+        } finally {
+            synchronized (clients) {
+                clients.remove(client);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        synchronized (clients) {
+            for (Socket c : clients) {
+                c.close();
+            }
+        }
+        synchronized (out) {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Streams the trace to a {@link DbgCollector}. Every {@code write} becomes a
+ * frame prefixed by its length. The collector grants credits: first the size
+ * of its window, then one for each frame it has stored. Frames are sent only
+ * while there are credits left and are kept until acknowledged, so when the
+ * connection is lost they are sent again after reconnecting. When the buffer
+ * is full, new frames are dropped rather than blocking the program.
+ */
+final class DbgCollectorOutput extends OutputStream implements Runnable {
+    private static final long BUFFER = 16L << 20;
+    private static final long CLOSE_TIMEOUT = 5000;
+    private static final long MAX_BACKOFF = 1000;
+
+    private final String host;
+    private final int port;
+    private final Thread sender;
+    private final ArrayDeque<byte[]> queued = new ArrayDeque<>();
+    private final ArrayDeque<byte[]> pending = new ArrayDeque<>();
+    private long buffered;
+    private long dropped;
+    private int credits;
+    private int connection;
+    private boolean connected;
+    private boolean closed;
+
+    DbgCollectorOutput(String address) {
+        int colon = address.lastIndexOf(':');
+        this.host = colon < 0 ? "localhost" : address.substring(0, colon);
+        this.port = Integer.parseInt(address.substring(colon + 1));
+        this.sender = new Thread(this, "dbg-collector");
+        this.sender.setDaemon(true);
+        this.sender.start();
+    }
+
+    @Override
+    public void write(int b) {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        if (closed || buffered + len > BUFFER) {
+            dropped++;
+            return;
+        }
+        queued.addLast(Arrays.copyOfRange(b, off, off + len));
+        buffered += len;
+        notifyAll();
+    }
+
+    synchronized long dropped() {
+        return dropped;
+    }
+
+    /**
+     * Waits a while for the buffered frames to be acknowledged and stops
+     * sending.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+            long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT;
+            try {
+                while (!queued.isEmpty() || !pending.isEmpty()) {
+                    long left = deadline - System.currentTimeMillis();
+                    if (left <= 0) {
+                        break;
+                    }
+                    wait(left);
+                }
+            } catch (InterruptedException ex) {
+                // stop waiting
+            }
+            dropped += queued.size() + pending.size();
+        }
+        sender.interrupt();
+    }
+
+    private synchronized boolean finished() {
+        return closed && queued.isEmpty() && pending.isEmpty();
+    }
+
+    @Override
+    public void run() {
+        long backoff = 10;
+        while (!finished()) {
+            try (Socket socket = new Socket(host, port)) {
+                socket.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                int window = in.readInt();
+                int id;
+                synchronized (this) {
+                    while (!pending.isEmpty()) {
+                        queued.addFirst(pending.removeLast());
+                    }
+                    credits = window;
+                    connected = true;
+                    id = ++connection;
+                }
+                Thread reader = new Thread(() -> readCredits(in, id), "dbg-collector-credits");
+                reader.setDaemon(true);
+                reader.start();
+                backoff = 10;
+                send(out);
+            } catch (IOException ex) {
+                // connect again
+            } catch (InterruptedException ex) {
+                return;
+            }
+            synchronized (this) {
+                connected = false;
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException ex) {
+                return;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF);
+        }
+    }
+
+    private void send(DataOutputStream out) throws IOException, InterruptedException {
+        for (;;) {
+            byte[] frame;
+            boolean more;
+            synchronized (this) {
+                while (connected && (queued.isEmpty() || credits == 0)) {
+                    if (closed && queued.isEmpty() && pending.isEmpty()) {
+                        return;
+                    }
+                    wait();
+                }
+                if (!connected) {
+                    throw new IOException("Connection lost");
+                }
+                frame = queued.removeFirst();
+                pending.addLast(frame);
+                credits--;
+                more = !queued.isEmpty() && credits > 0;
+            }
+            out.writeInt(frame.length);
+            out.write(frame);
+            if (!more) {
+                out.flush();
+            }
+        }
+    }
+
+    private void readCredits(DataInputStream in, int id) {
+        try {
+            for (;;) {
+                int acknowledged = in.readInt();
+                synchronized (this) {
+                    for (int i = 0; i < acknowledged && !pending.isEmpty(); i++) {
+                        buffered -= pending.removeFirst().length;
+                    }
+                    credits += acknowledged;
+                    notifyAll();
+                }
+            }
+        } catch (IOException ex) {
+            synchronized (this) {
+                if (connection == id) {
+                    connected = false;
+                    notifyAll();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.TruffleLanguage;
+import com.oracle.truffle.api.TruffleLogger;
+import com.oracle.truffle.api.frame.VirtualFrame;
+import com.oracle.truffle.api.instrumentation.EventContext;
+import com.oracle.truffle.api.instrumentation.ExecutionEventListener;
+import com.oracle.truffle.api.instrumentation.SourceSectionFilter;
+import com.oracle.truffle.api.instrumentation.StandardTags;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+final class DbgContext {
+    final TruffleLanguage.Env env;
+    final DbgBudget budget;
+    final DbgSink sink;
+    private final DbgCollectorOutput collector;
+    private final Map<String, Map<DbgHook, Registration>> registered = new HashMap<>();
+
+    DbgContext(TruffleLanguage.Env env) {
+        this.env = env;
+        this.budget = new DbgBudget(
+            env.getOptions().get(DbgLanguage.OverheadBudget),
+            env.getOptions().get(DbgLanguage.OutputBudget),
+            System.nanoTime()
+        );
+        final String collectorAddress = env.getOptions().get(DbgLanguage.Collector);
+        this.collector = collectorAddress.isEmpty() || env.getOptions().get(DbgLanguage.JFR) ? null : new DbgCollectorOutput(collectorAddress);
+        this.sink = createSink(env, collector);
+    }
+
+    private static DbgSink createSink(TruffleLanguage.Env env, DbgCollectorOutput collector) {
+        if (env.getOptions().get(DbgLanguage.JFR)) {
+            return new DbgJfrSink();
+        }
+        final DbgOutputSink out = new DbgOutputSink(collector != null ? collector : env.out());
+        final int flightRecorder = env.getOptions().get(DbgLanguage.FlightRecorder);
+        return flightRecorder > 0 ? new DbgFlightRecorder(flightRecorder, out) : out;
+    }
+
+    DbgEventsInstrument events() {
+        return env.lookup(env.getInstruments().get(DbgEventsInstrument.ID), DbgEventsInstrument.class);
+    }
+
+    void initialize() {
+        if (sink instanceof DbgFlightRecorder) {
+            final DbgFlightRecorder recorder = (DbgFlightRecorder) sink;
+            DbgEventsInstrument events = events();
+            SourceSectionFilter roots = SourceSectionFilter.newBuilder().tagIs(StandardTags.RootTag.class).includeInternal(false).build();
+            events.attachListener(roots, new ExecutionEventListener() {
+                @Override
+                public void onEnter(EventContext ctx, VirtualFrame frame) {
+                }
+
+                @Override
+                public void onReturnValue(EventContext ctx, VirtualFrame frame, Object result) {
+                }
+
+                @Override
+                public void onReturnExceptional(EventContext ctx, VirtualFrame frame, Throwable exception) {
+                    recorder.unwind(exception);
+                }
+            });
+        }
+    }
+
+    synchronized void dispose() {
+        for (Map<DbgHook, Registration> regs : registered.values()) {
+            for (DbgHook hook : regs.keySet()) {
+                hook.summary();
+            }
+        }
+        if (collector != null) {
+            collector.close();
+            long dropped = collector.dropped();
+            if (dropped > 0) {
+                TruffleLogger.getLogger("dbg", DbgContext.class).warning(dropped + " records not delivered to the collector");
+            }
+        }
+    }
+
+    /**
+     * Registers watchpoints of a {@code .dbg} source. When a source of the
+     * same name has already been registered, only the file patterns and
+     * functions whose watchpoints changed are attached or detached.
+     */
+    @CompilerDirectives.TruffleBoundary
+    synchronized void register(String name, Object insight, List<DbgAt> statements) {
+        Map<DbgHook, Registration> previous = registered.remove(name);
+        Map<DbgHook, Registration> now = new LinkedHashMap<>();
+        List<DbgHook> hooks = new ArrayList<>(DbgAtGroup.group(statements));
+        for (DbgAt at : statements) {
+            if (at.account) {
+                hooks.add(new DbgAccount(at));
+            } else if (at.count) {
+                hooks.add(new DbgCount(at));
+            } else if (at.function != null) {
+                hooks.add(new DbgAtFunction(at));
+            }
+        }
+        for (DbgHook hook : hooks) {
+            if (now.containsKey(hook)) {
+                continue;
+            }
+            Registration reg = previous == null ? null : previous.remove(hook);
+            if (reg == null) {
+                reg = new Registration(hook, hook.attach(this, insight));
+            }
+            now.put(hook, reg);
+        }
+        if (previous != null) {
+            for (Registration reg : previous.values()) {
+                reg.hook.detach(reg.handle);
+            }
+        }
+        registered.put(name, now);
+    }
+
+    /**
+     * @return watchpoints of all the registered sources
+     */
+    @CompilerDirectives.TruffleBoundary
+    synchronized DbgWatchpoints watchpoints() {
+        Map<DbgHook, Registration> all = new LinkedHashMap<>();
+        for (Map<DbgHook, Registration> regs : registered.values()) {
+            all.putAll(regs);
+        }
+        return watchpoints(all);
+    }
+
+    private static DbgWatchpoints watchpoints(Map<DbgHook, Registration> regs) {
+        List<DbgAt> all = new ArrayList<>();
+        for (Registration reg : regs.values()) {
+            all.addAll(reg.hook.watchpoints());
+        }
+        return new DbgWatchpoints(all.toArray(new DbgAt[0]));
+    }
+
+    private static final class Registration {
+        final DbgHook hook;
+        final Object handle;
+
+        Registration(DbgHook hook, Object handle) {
+            this.hook = hook;
+            this.handle = handle;
+        }
+    }
+}
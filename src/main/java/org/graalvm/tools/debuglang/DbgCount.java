@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import com.oracle.truffle.api.frame.VirtualFrame;
+import com.oracle.truffle.api.instrumentation.EventBinding;
+import com.oracle.truffle.api.instrumentation.ExecutionEventNode;
+import com.oracle.truffle.api.instrumentation.SourceSectionFilter;
+import com.oracle.truffle.api.instrumentation.StandardTags;
+import com.oracle.truffle.api.source.Source;
+import com.oracle.truffle.api.source.SourceSection;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts hits of statements per line, for coverage. Nothing is written per
+ * hit. When the hook is detached or the context disposed, every line with a
+ * statement is written as a record with its {@code hits}, so the coverage
+ * is a replayable trace and never executed lines have zero hits.
+ */
+final class DbgCount implements DbgHook {
+    static final List<DbgAtWatch> HITS = Collections.singletonList(new DbgAtWatch("hits", null));
+
+    private final DbgAt at;
+    /** by source, as sources with the same name may differ in length */
+    private final Map<Source, Lines> sources = new ConcurrentHashMap<>();
+    private DbgContext context;
+
+    DbgCount(DbgAt at) {
+        this.at = at;
+    }
+
+    @Override
+    public Object attach(DbgContext context, Object insight) {
+        this.context = context;
+        SourceSectionFilter statements = DbgAccount.filter(at, StandardTags.StatementTag.class);
+        DbgEventsInstrument events = context.events();
+        EventBinding<?> loaded = events.attachLoadListener(statements, (ev) -> {
+            SourceSection section = ev.getSourceSection();
+            lines(section).statement(section.getStartLine());
+        });
+        EventBinding<?> counted = events.attachFactory(statements, (ctx) -> {
+            SourceSection section = ctx.getInstrumentedSourceSection();
+            return section == null ? null : new Hit(lines(section).counts, section.getStartLine());
+        });
+        return new EventBinding<?>[] { loaded, counted };
+    }
+
+    private Lines lines(SourceSection section) {
+        return sources.computeIfAbsent(section.getSource(), (source) -> new Lines(source.getLineCount()));
+    }
+
+    @Override
+    public void detach(Object handle) {
+        for (EventBinding<?> binding : (EventBinding<?>[]) handle) {
+            binding.dispose();
+        }
+        summary();
+    }
+
+    @Override
+    public Collection<DbgAt> watchpoints() {
+        return Collections.singleton(at);
+    }
+
+    @Override
+    public void summary() {
+        Map<String, List<Lines>> byName = new TreeMap<>();
+        for (Map.Entry<Source, Lines> e : sources.entrySet()) {
+            byName.computeIfAbsent(e.getKey().getName(), (name) -> new ArrayList<>()).add(e.getValue());
+        }
+        for (Map.Entry<String, List<Lines>> e : byName.entrySet()) {
+            int lineCount = 0;
+            for (Lines lines : e.getValue()) {
+                lineCount = Math.max(lineCount, lines.counts.length);
+            }
+            for (int line = 1; line < lineCount; line++) {
+                long hits = 0;
+                boolean statement = false;
+                for (Lines lines : e.getValue()) {
+                    if (line < lines.counts.length) {
+                        hits += lines.counts[line];
+                        statement |= lines.hasStatement(line);
+                    }
+                }
+                if (hits > 0 || statement) {
+                    context.sink.record(e.getKey(), line, HITS, new Object[] { (int) Math.min(hits, Integer.MAX_VALUE) });
+                }
+            }
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return at.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof DbgCount && at.equals(((DbgCount) obj).at);
+    }
+
+    /**
+     * Hits of a source indexed by line. Increments aren't synchronized: under
+     * contention a count may be lower than the real one, but it is never
+     * zero for an executed line. Counts stop at {@link Integer#MAX_VALUE}
+     * rather than wrap, the trace records integers.
+     */
+    static final class Lines {
+        final int[] counts;
+        private final BitSet statements = new BitSet();
+
+        Lines(int lineCount) {
+            this.counts = new int[lineCount + 1];
+        }
+
+        static void hit(int[] counts, int line) {
+            if (counts[line] != Integer.MAX_VALUE) {
+                counts[line]++;
+            }
+        }
+
+        synchronized void statement(int line) {
+            statements.set(line);
+        }
+
+        synchronized boolean hasStatement(int line) {
+            return statements.get(line);
+        }
+    }
+
+    private final class Hit extends ExecutionEventNode {
+        private final int[] counts;
+        private final int line;
+
+        Hit(int[] counts, int line) {
+            this.counts = counts;
+            this.line = line;
+        }
+
+        @Override
+        protected void onEnter(VirtualFrame frame) {
+            if (at.isEnabled()) {
+                Lines.hit(counts, line);
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Selects records of a trace while it is being parsed. The filter is a
+ * semicolon separated list of clauses. Location clauses like {@code fib.js},
+ * {@code fib.js:5} or {@code fib.js:3-10} select records at any of the
+ * locations. Value clauses like {@code n>5} or {@code n1=0} must all hold
+ * for a record to be selected.
+ */
+final class DbgFilter {
+    private static final Pattern VALUE = Pattern.compile("([A-Za-z][A-Za-z0-9\\.]*)\\s*(<=|>=|!=|=|<|>)\\s*(-?\\d+)");
+    private static final Pattern LOCATION = Pattern.compile("([^:]+)(?::(\\d+)(?:-(\\d+))?)?");
+
+    private final List<Location> locations;
+    private final List<Value> values;
+    private final boolean[] satisfied;
+
+    private DbgFilter(List<Location> locations, List<Value> values) {
+        this.locations = locations;
+        this.values = values;
+        this.satisfied = new boolean[values.size()];
+    }
+
+    static DbgFilter parse(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return null;
+        }
+        List<Location> locations = new ArrayList<>();
+        List<Value> values = new ArrayList<>();
+        for (String clause : text.split(";")) {
+            clause = clause.trim();
+            if (clause.isEmpty()) {
+                continue;
+            }
+            Matcher m = VALUE.matcher(clause);
+            if (m.matches()) {
+                values.add(new Value(m.group(1), m.group(2), Integer.parseInt(m.group(3))));
+                continue;
+            }
+            m = LOCATION.matcher(clause);
+            if (!m.matches()) {
+                throw new IllegalArgumentException("Unrecognized filter clause: " + clause);
+            }
+            int from = m.group(2) == null ? 0 : Integer.parseInt(m.group(2));
+            int to = m.group(3) != null ? Integer.parseInt(m.group(3)) : m.group(2) != null ? from : Integer.MAX_VALUE;
+            locations.add(new Location(m.group(1).trim(), from, to));
+        }
+        return new DbgFilter(locations, values);
+    }
+
+    /**
+     * Starts a new record, none of the value clauses holds yet.
+     */
+    void reset() {
+        for (int i = 0; i < satisfied.length; i++) {
+            satisfied[i] = false;
+        }
+    }
+
+    boolean acceptLocation(String file, int line) {
+        reset();
+        if (locations.isEmpty()) {
+            return true;
+        }
+        for (Location l : locations) {
+            if (l.from <= line && line <= l.to && DbgAt.matchesFile(l.file, file)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean acceptValue(String name, Integer value) {
+        for (int i = 0; i < satisfied.length; i++) {
+            Value v = values.get(i);
+            if (v.name.equals(name)) {
+                if (value == null || !v.test(value)) {
+                    return false;
+                }
+                satisfied[i] = true;
+            }
+        }
+        return true;
+    }
+
+    boolean acceptRecord() {
+        for (boolean s : satisfied) {
+            if (!s) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Location {
+        final String file;
+        final int from;
+        final int to;
+
+        Location(String file, int from, int to) {
+            this.file = file;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private static final class Value {
+        final String name;
+        final String op;
+        final int value;
+
+        Value(String name, String op, int value) {
+            this.name = name;
+            this.op = op;
+            this.value = value;
+        }
+
+        boolean test(int actual) {
+            switch (op) {
+                case "<": return actual < value;
+                case "<=": return actual <= value;
+                case ">": return actual > value;
+                case ">=": return actual >= value;
+                case "!=": return actual != value;
+                default: return actual == value;
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.TruffleException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the most recent records of each thread in memory. They are written
+ * out as a replayable trace only when {@link #dump() dumped}. Rings of
+ * finished threads are dropped once they have been drained.
+ */
+final class DbgFlightRecorder extends DbgSink {
+    private final int size;
+    private final DbgOutputSink out;
+    private final List<Ring> rings = new ArrayList<>();
+    private final ThreadLocal<Ring> ring = new ThreadLocal<Ring>() {
+        @Override
+        protected Ring initialValue() {
+            Ring r = new Ring(size, Thread.currentThread());
+            synchronized (rings) {
+                rings.removeIf(Ring::isDeadAndEmpty);
+                rings.add(r);
+            }
+            return r;
+        }
+    };
+
+    DbgFlightRecorder(int size, DbgOutputSink out) {
+        this.size = size;
+        this.out = out;
+    }
+
+    @CompilerDirectives.TruffleBoundary
+    @Override
+    long record(String src, int line, List<DbgAtWatch> watches, Object[] values) {
+        ring.get().add(format(src, line, watches, values));
+        return 0;
+    }
+
+    @CompilerDirectives.TruffleBoundary
+    @Override
+    void dump() {
+        StringBuilder sb = new StringBuilder();
+        synchronized (rings) {
+            for (Ring r : rings) {
+                r.drainTo(sb);
+            }
+            rings.removeIf(Ring::isDeadAndEmpty);
+        }
+        if (sb.length() > 0) {
+            out.write(sb.toString());
+        }
+    }
+
+    int rings() {
+        synchronized (rings) {
+            return rings.size();
+        }
+    }
+
+    @CompilerDirectives.TruffleBoundary
+    void unwind(Throwable exception) {
+        if (exception instanceof TruffleException && ring.get().unwinding(exception)) {
+            dump();
+        }
+    }
+
+    private static final class Ring {
+        private final String[] records;
+        private final WeakReference<Thread> owner;
+        private int next;
+        private boolean full;
+        private Throwable lastException;
+
+        Ring(int size, Thread owner) {
+            this.records = new String[size];
+            this.owner = new WeakReference<>(owner);
+        }
+
+        synchronized boolean isDeadAndEmpty() {
+            Thread t = owner.get();
+            return (t == null || !t.isAlive()) && next == 0 && !full;
+        }
+
+        synchronized void add(String record) {
+            records[next++] = record;
+            if (next == records.length) {
+                next = 0;
+                full = true;
+            }
+        }
+
+        synchronized void drainTo(StringBuilder sb) {
+            if (full) {
+                for (int i = next; i < records.length; i++) {
+                    sb.append(records[i]);
+                }
+            }
+            for (int i = 0; i < next; i++) {
+                sb.append(records[i]);
+            }
+            Arrays.fill(records, null);
+            next = 0;
+            full = false;
+        }
+
+        boolean unwinding(Throwable exception) {
+            if (lastException == exception) {
+                return false;
+            }
+            lastException = exception;
+            return true;
+        }
+    }
+}
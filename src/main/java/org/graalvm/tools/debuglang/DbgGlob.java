@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import java.util.regex.Pattern;
+
+/**
+ * File pattern of an {@code at} location. Plain names match the source name
+ * or its path suffix, {@code *} matches within a path segment, {@code **}
+ * across segments and {@code ?} a single character.
+ */
+final class DbgGlob {
+    private final String file;
+    private final Pattern pattern;
+
+    DbgGlob(String file) {
+        this.file = file;
+        this.pattern = isGlob(file) ? Pattern.compile(toRegex(file)) : null;
+    }
+
+    static boolean isGlob(String file) {
+        return file.indexOf('*') >= 0 || file.indexOf('?') >= 0;
+    }
+
+    boolean matches(String name) {
+        if (pattern == null) {
+            return DbgAt.matchesFile(file, name);
+        }
+        return pattern.matcher(name).matches();
+    }
+
+    private static String toRegex(String glob) {
+        StringBuilder sb = new StringBuilder();
+        if (!glob.startsWith("/")) {
+            sb.append("(?:.*/)?");
+        }
+        int literal = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            char ch = glob.charAt(i);
+            if (ch != '*' && ch != '?') {
+                continue;
+            }
+            if (literal < i) {
+                sb.append(Pattern.quote(glob.substring(literal, i)));
+            }
+            if (ch == '?') {
+                sb.append("[^/]");
+            } else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                sb.append(".*");
+                i++;
+            } else {
+                sb.append("[^/]*");
+            }
+            literal = i + 1;
+        }
+        if (literal < glob.length()) {
+            sb.append(Pattern.quote(glob.substring(literal)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
+import com.oracle.truffle.api.interop.InteropException;
+import com.oracle.truffle.api.interop.InteropLibrary;
+import com.oracle.truffle.api.nodes.ExplodeLoop;
+import com.oracle.truffle.api.nodes.Node;
+import java.util.List;
+
+/**
+ * Records a hit of a single watchpoint at a single location. Each watch has
+ * its own {@link Read} node and each step of its member path its own
+ * library, so a path like {@code req.user.id} doesn't share the inline cache
+ * with other watches.
+ */
+final class DbgHitNode extends Node {
+    private final DbgAt at;
+    private final List<DbgAtWatch> watches;
+    @Children private final Read[] reads;
+
+    private DbgHitNode(DbgAt at, List<DbgAtWatch> watches, boolean cached) {
+        this.at = at;
+        this.watches = watches;
+        this.reads = new Read[watches.size()];
+        for (int i = 0; i < reads.length; i++) {
+            reads[i] = new Read(watches.get(i), cached);
+        }
+    }
+
+    /**
+     * @param frame first frame seen at the location, {@code watch *} is
+     *   expanded to its members
+     */
+    static DbgHitNode create(DbgAt at, Object frame) {
+        return new DbgHitNode(at, at.watches(frame), true);
+    }
+
+    static DbgHitNode createUncached(DbgAt at, Object frame) {
+        return new DbgHitNode(at, at.watches(frame), false);
+    }
+
+    void execute(DbgContext context, Object frame, String src, int line) {
+        if (!at.isEnabled()) {
+            return;
+        }
+        at.countHit();
+        if (at.dump) {
+            context.sink.dump();
+            return;
+        }
+        final DbgBudget budget = context.budget;
+        if (budget.enabled && !budget.sample(at)) {
+            return;
+        }
+        long start = budget.enabled ? System.nanoTime() : 0;
+        long bytes = 0;
+        Object[] values = new Object[reads.length];
+        if (readAll(frame, values)) {
+            bytes = context.sink.record(src, line, watches, values);
+        }
+        if (budget.enabled) {
+            long end = System.nanoTime();
+            budget.charge(at, end - start, bytes, end);
+        }
+    }
+
+    @ExplodeLoop
+    private boolean readAll(Object frame, Object[] values) {
+        boolean found = false;
+        for (int i = 0; i < reads.length; i++) {
+            try {
+                values[i] = reads[i].read(frame);
+                found |= values[i] != null;
+            } catch (InteropException ex) {
+                // not readable here
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Hits of all watchpoints at one location.
+     */
+    static final class Site extends Node {
+        @Children private final DbgHitNode[] hits;
+
+        private Site(DbgAt[] found, Object frame, boolean cached) {
+            this.hits = new DbgHitNode[found.length];
+            for (int i = 0; i < found.length; i++) {
+                hits[i] = new DbgHitNode(found[i], found[i].watches(frame), cached);
+            }
+        }
+
+        static Site create(DbgAt[] found, Object frame) {
+            return new Site(found, frame, true);
+        }
+
+        static Site createUncached(DbgAt[] found, Object frame) {
+            return new Site(found, frame, false);
+        }
+
+        @ExplodeLoop
+        void execute(DbgContext context, Object frame, String src, int line) {
+            for (int i = 0; i < hits.length; i++) {
+                hits[i].execute(context, frame, src, line);
+            }
+        }
+    }
+
+    /**
+     * Reads one watch, following its member path.
+     */
+    static final class Read extends Node {
+        private final boolean expanded;
+        @CompilationFinal(dimensions = 1) private final String[] path;
+        @Children private final InteropLibrary[] steps;
+        @Child private InteropLibrary ints;
+
+        Read(DbgAtWatch watch, boolean cached) {
+            this.expanded = watch.expanded;
+            this.path = watch.path;
+            this.steps = new InteropLibrary[path.length];
+            for (int i = 0; i < steps.length; i++) {
+                steps[i] = library(cached);
+            }
+            this.ints = expanded ? library(cached) : null;
+        }
+
+        private static InteropLibrary library(boolean cached) {
+            return cached ? InteropLibrary.getFactory().createDispatched(3) : InteropLibrary.getFactory().getUncached();
+        }
+
+        @ExplodeLoop
+        Object read(Object frame) throws InteropException {
+            Object value = frame;
+            for (int i = 0; i < steps.length; i++) {
+                value = steps[i].readMember(value, path[i]);
+            }
+            if (expanded) {
+                return ints.fitsInInt(value) ? ints.asInt(value) : null;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Converts watch events of a {@code .jfr} recording into a replayable
+ * {@code .dbg} trace.
+ * <pre>
+ * $ java -cp debuglang.jar org.graalvm.tools.debuglang.DbgJfrConverter recording.jfr &gt;log.dbg
+ * </pre>
+ */
+public final class DbgJfrConverter {
+    private DbgJfrConverter() {
+    }
+
+    public static void main(String... args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: DbgJfrConverter recording.jfr");
+            System.exit(1);
+        }
+        Writer out = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+        convert(Paths.get(args[0]), out);
+        out.flush();
+    }
+
+    public static void convert(Path recording, Writer out) throws IOException {
+        try (RecordingFile file = new RecordingFile(recording)) {
+            long hit = 0;
+            while (file.hasMoreEvents()) {
+                RecordedEvent ev = file.readEvent();
+                if (!DbgJfrEvent.NAME.equals(ev.getEventType().getName())) {
+                    continue;
+                }
+                if (hit != ev.getLong("hit")) {
+                    hit = ev.getLong("hit");
+                    out.write("at " + ev.getString("file") + ":" + ev.getInt("line") + "\n");
+                }
+                out.write("  watch " + ev.getString("variable") + " = " + ev.getString("value") + "\n");
+            }
+        }
+    }
+}
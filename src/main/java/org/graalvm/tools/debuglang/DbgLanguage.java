@@ -41,23 +41,74 @@
 package org.graalvm.tools.debuglang;
 
 import com.oracle.truffle.api.CallTarget;
+import com.oracle.truffle.api.Option;
+import com.oracle.truffle.api.Scope;
 import com.oracle.truffle.api.Truffle;
 import com.oracle.truffle.api.TruffleLanguage;
 import com.oracle.truffle.api.debug.DebuggerTags;
 import com.oracle.truffle.api.instrumentation.ProvidedTags;
 import com.oracle.truffle.api.instrumentation.StandardTags;
+import java.util.Collections;
+import org.graalvm.options.OptionCategory;
+import org.graalvm.options.OptionDescriptors;
+import org.graalvm.options.OptionKey;
+import org.graalvm.options.OptionValues;
 
 @TruffleLanguage.Registration(
     characterMimeTypes = DbgFileType.TYPE,
     name = "Debug Language",
     id = "dbg",
-    fileTypeDetectors = DbgFileType.class
+    fileTypeDetectors = DbgFileType.class,
+    contextPolicy = TruffleLanguage.ContextPolicy.SHARED
 )
 @ProvidedTags({StandardTags.StatementTag.class, DebuggerTags.class})
-public class DbgLanguage extends TruffleLanguage<TruffleLanguage.Env> {
+public class DbgLanguage extends TruffleLanguage<DbgContext> {
+    @Option(category = OptionCategory.USER, help = "Maximal percentage of wall time spent recording watches (zero means unlimited)")
+    static final OptionKey<Double> OverheadBudget = new OptionKey<>(0.0);
+
+    @Option(category = OptionCategory.USER, help = "Maximal number of trace bytes written per second (zero means unlimited)")
+    static final OptionKey<Long> OutputBudget = new OptionKey<>(0L);
+
+    @Option(category = OptionCategory.USER, help = "Keep given number of recent records per thread in memory and write them only on dump (zero writes every record)")
+    static final OptionKey<Integer> FlightRecorder = new OptionKey<>(0);
+
+    @Option(category = OptionCategory.USER, help = "Emit watches as Java Flight Recorder events instead of writing them to the output")
+    static final OptionKey<Boolean> JFR = new OptionKey<>(false);
+
+    @Option(category = OptionCategory.USER, help = "Parse only records matching the filter, e.g. 'fib.js:3-10;n>5'")
+    static final OptionKey<String> Filter = new OptionKey<>("");
+
+    @Option(category = OptionCategory.USER, help = "Stream the trace to a collector at given [host:]port instead of writing it to the output")
+    static final OptionKey<String> Collector = new OptionKey<>("");
+
+    @Override
+    protected DbgContext createContext(Env env) {
+        return new DbgContext(env);
+    }
+
+    @Override
+    protected void disposeContext(DbgContext context) {
+        context.dispose();
+    }
+
     @Override
-    protected Env createContext(Env env) {
-        return env;
+    protected void initializeContext(DbgContext context) throws Exception {
+        context.initialize();
+    }
+
+    @Override
+    protected Iterable<Scope> findTopScopes(DbgContext context) {
+        return Collections.singleton(Scope.newBuilder("dbg", new DbgScope(context)).build());
+    }
+
+    @Override
+    protected OptionDescriptors getOptionDescriptors() {
+        return new DbgLanguageOptionDescriptors();
+    }
+
+    @Override
+    protected boolean areOptionsCompatible(OptionValues firstOptions, OptionValues newOptions) {
+        return firstOptions.get(Filter).equals(newOptions.get(Filter));
     }
 
     @Override
@@ -67,11 +118,16 @@ public class DbgLanguage extends TruffleLanguage<TruffleLanguage.Env> {
 
     @Override
     protected CallTarget parse(ParsingRequest request) throws Exception {
-        DbgProgramNode res = new DbgParser(new DbgLanguageGrammar(this)).parseString(request.getSource().getCharacters().toString());
+        DbgFilter filter = DbgFilter.parse(getCurrentContext(DbgLanguage.class).env.getOptions().get(Filter));
+        DbgProgramNode res = new DbgParser(new DbgLanguageGrammar(this, request.getSource().getName(), filter, null)).parseString(request.getSource().getCharacters().toString());
         return Truffle.getRuntime().createCallTarget(res);
     }
 
 
+    static DbgContext getContext() {
+        return getCurrentContext(DbgLanguage.class);
+    }
+
     static <E extends Exception> E raise(Class<E> type, Exception ex) throws E {
         throw (E) ex;
     }
@@ -48,52 +48,219 @@ import java.util.Collections;
 import java.util.LinkedList;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 final class DbgLanguageGrammar {
     private final DbgLanguage language;
+    private final String name;
+    private final DbgFilter filter;
+    private final Consumer<DbgAt> records;
+    private boolean skip;
 
-    DbgLanguageGrammar(DbgLanguage language) {
+    DbgLanguageGrammar(DbgLanguage language, String name) {
+        this(language, name, null, null);
+    }
+
+    /**
+     * @param filter when non-{@code null}, records it doesn't accept are
+     *   skipped before their objects are created
+     * @param records when non-{@code null}, each parsed record is passed to
+     *   it instead of being collected into the program
+     */
+    DbgLanguageGrammar(DbgLanguage language, String name, DbgFilter filter, Consumer<DbgAt> records) {
         this.language = language;
+        this.name = name;
+        this.filter = filter;
+        this.records = records;
     }
 
     @StartSymbol(parserClassName = "DbgParser")
-    DbgProgramNode is (List<DbgAt> s) { return new DbgProgramNode(language, s); }
-    List<DbgAt> is() { return Collections.emptyList(); }
-    List<DbgAt> is(DbgAt at, List<DbgAt> end) {
-        final LinkedList<DbgAt> l = new LinkedList<>(end);
-        l.addFirst(at);
-        return l;
+    DbgProgramNode is (DbgTraceStore s) { return new DbgProgramNode(language, name, s.trim()); }
+    DbgTraceStore is() { return new DbgTraceStore(); }
+    DbgTraceStore is(DbgTraceStore prev, DbgAt at) {
+        if (at == null) {
+            // filtered out
+        } else if (records != null) {
+            records.accept(at);
+        } else {
+            prev.add(at);
+        }
+        return prev;
+    }
+    Location is(@Name("at") KeywordAt at, String file, Colon c, Integer line) {
+        checkLine(line);
+        return location(file, line, line);
+    }
+    Location is(@Name("at") KeywordAt at, String file, Colon c, Integer from, Dash d, Integer to) {
+        checkLine(from);
+        checkLine(to);
+        return location(file, from, to);
+    }
+    Location is(@Name("at") KeywordAt at, String file, Colon c, Star any) {
+        return location(file, 1, Integer.MAX_VALUE);
+    }
+    Location is(@Name("at") KeywordAt at, String f, String function, String on, String event) {
+        expect("function", f);
+        expect("on", on);
+        skip = false;
+        if (filter != null) {
+            filter.reset();
+        }
+        switch (event) {
+            case "enter":
+                return new Location(function, false, false);
+            case "return":
+                return new Location(function, true, false);
+            case "exception":
+                return new Location(function, false, true);
+            default:
+                throw new IllegalArgumentException("Expecting enter, return or exception, not " + event);
+        }
+    }
+    // integer() accepts 2147483648 for negative values, it ends up negative here
+    private static void checkLine(int line) {
+        if (line < 0) {
+            throw new IllegalArgumentException("Line number out of range: " + (line & 0xffffffffL));
+        }
     }
-    DbgAt is(@Name("at") KeywordAt at, String file, Colon c, Integer line, List<DbgAtWatch> actions) {
-        return new DbgAt(file, line, actions);
+    private static void expect(String word, String text) {
+        if (!word.equals(text)) {
+            throw new IllegalArgumentException("Expecting " + word + ", not " + text);
+        }
     }
+    private Location location(String file, int from, int to) {
+        skip = filter != null && !filter.acceptLocation(file, from);
+        return skip ? null : new Location(file, from, to);
+    }
+    DbgAt is(Location at, List<DbgAtWatch> actions) {
+        if (skip || (filter != null && !filter.acceptRecord())) {
+            return null;
+        }
+        return at.create(actions, false);
+    }
+    // actions are plain words, not keywords, so variables may be named like them
+    DbgAt is(Location at, String action) {
+        switch (action) {
+            case "dump":
+                return skip ? null : at.create(Collections.emptyList(), true);
+            case "account":
+                return skip ? null : DbgAt.account(at.file, at.line, at.lastLine, at.function);
+            case "count":
+                return skip ? null : DbgAt.count(at.file, at.line, at.lastLine, at.function);
+            default:
+                throw new IllegalArgumentException("Expecting watch, dump, account or count, not " + action);
+        }
+    }
+    DbgAt is(@Name("at") KeywordAt at, String f, String function, String action) {
+        expect("function", f);
+        switch (action) {
+            case "account":
+                return DbgAt.account(null, 0, 0, function);
+            case "count":
+                return DbgAt.count(null, 0, 0, function);
+            default:
+                throw new IllegalArgumentException("Expecting account or count, not " + action);
+        }
+    }
+    // 2147483648 is accepted as Integer.MIN_VALUE so that -2147483648 parses
     Integer integer(@Match("\\d+") Token t) {
-        return Integer.parseInt(t.toString());
+        long value = Long.parseLong(t.toString());
+        if (value > 1L + Integer.MAX_VALUE) {
+            throw new NumberFormatException("Too big: " + t);
+        }
+        return (int) value;
     }
-    String id(@Match("[A-Za-z][A-Za-z0-9\\.]*") Token t) {
+    // the parser generator excludes the end of a range, hence the extra Z, z and 9
+    String id(@Match("[A-ZZa-zz_/\\.][A-ZZa-zz0-99_/\\.\\-\\*]*|\\*[A-ZZa-zz0-99_/\\.\\-\\*]+") Token t) {
         return t.toString();
     }
     List<DbgAtWatch> action(DbgAtWatch a) {
         final LinkedList<DbgAtWatch> l = new LinkedList<>();
-        l.addFirst(a);
+        if (a != null) {
+            l.addFirst(a);
+        }
         return l;
     }
     List<DbgAtWatch> action(List<DbgAtWatch> prev, DbgAtWatch a) {
+        if (a == null) {
+            return prev;
+        }
         final LinkedList<DbgAtWatch> l = new LinkedList<>(prev);
         l.addFirst(a);
         return l;
     }
 
     DbgAtWatch is(@Name("watch") KeywordWatch watch, String variableName, Equals equals, Integer value) {
-        return new DbgAtWatch(variableName, value);
+        if (value < 0) {
+            throw new NumberFormatException("Too big: " + variableName);
+        }
+        return watch(variableName, value);
+    }
+
+    // negative values are a dash and a number, as a signed token would split ranges like 10-40
+    DbgAtWatch is(@Name("watch") KeywordWatch watch, String variableName, Equals equals, Dash minus, Integer value) {
+        return watch(variableName, -value);
     }
 
     DbgAtWatch is(@Name("watch") KeywordWatch watch, String variableName) {
-        return new DbgAtWatch(variableName, null);
+        return watch(variableName, null);
+    }
+
+    DbgAtWatch is(@Name("watch") KeywordWatch watch, Star all) {
+        return watch(DbgAtWatch.ALL, null);
+    }
+
+    private DbgAtWatch watch(String variableName, Integer value) {
+        if (skip) {
+            return null;
+        }
+        if (filter != null && !filter.acceptValue(variableName, value)) {
+            skip = true;
+            return null;
+        }
+        return new DbgAtWatch(variableName, value);
     }
 
     static void ignore(@Match("\\s+") WhiteSpace w) {}
 
+    static final class Location {
+        final String file;
+        final int line;
+        final int lastLine;
+
+        final String function;
+        final boolean onReturn;
+        final boolean onException;
+
+        Location(String file, int line, int lastLine) {
+            this.file = file;
+            this.line = line;
+            this.lastLine = lastLine;
+            this.function = null;
+            this.onReturn = false;
+            this.onException = false;
+        }
+
+        Location(String function, boolean onReturn, boolean onException) {
+            this.file = null;
+            this.line = 0;
+            this.lastLine = 0;
+            this.function = function;
+            this.onReturn = onReturn;
+            this.onException = onException;
+        }
+
+        DbgAt create(List<DbgAtWatch> actions, boolean dump) {
+            if (onException) {
+                return DbgAt.exception(function, actions, dump);
+            }
+            if (function != null) {
+                return DbgAt.function(function, onReturn, actions, dump);
+            }
+            return new DbgAt(file, line, lastLine, actions, dump);
+        }
+    }
+
     static final class KeywordAt {
         KeywordAt(String k) {}
     }
@@ -111,6 +278,16 @@ final class DbgLanguageGrammar {
         Colon(String text) {}
     }
 
+    @Name("-")
+    static final class Dash {
+        Dash(String text) {}
+    }
+
+    @Name("*")
+    static final class Star {
+        Star(String text) {}
+    }
+
     @Name("=")
     static final class Equals {
         Equals(String text) {}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Interval index of line ranges. The ranges are cut into disjoint intervals,
+ * each knowing all the locations covering it, so a lookup is a single binary
+ * search regardless of how many ranges overlap.
+ */
+final class DbgLineIndex {
+    private static final DbgAt[] NONE = new DbgAt[0];
+
+    private final int[] starts;
+    private final DbgAt[][] covering;
+
+    DbgLineIndex(Collection<DbgAt> all) {
+        TreeSet<Integer> bounds = new TreeSet<>();
+        for (DbgAt at : all) {
+            bounds.add(at.line);
+            if (at.lastLine < Integer.MAX_VALUE) {
+                bounds.add(at.lastLine + 1);
+            }
+        }
+        this.starts = new int[bounds.size()];
+        this.covering = new DbgAt[bounds.size()][];
+        int i = 0;
+        for (int start : bounds) {
+            List<DbgAt> in = new ArrayList<>();
+            for (DbgAt at : all) {
+                if (at.line <= start && start <= at.lastLine) {
+                    in.add(at);
+                }
+            }
+            starts[i] = start;
+            covering[i] = in.isEmpty() ? NONE : in.toArray(NONE);
+            i++;
+        }
+    }
+
+    DbgAt[] find(int line) {
+        int at = Arrays.binarySearch(starts, line);
+        if (at < 0) {
+            at = -at - 2;
+        }
+        return at < 0 ? NONE : covering[at];
+    }
+}
@@ -73,10 +73,18 @@ final class DbgNodeAt extends RootNode {
         this.line = line;
     }
 
+    String getFile() {
+        return file;
+    }
+
+    int getLine() {
+        return line;
+    }
+
     @Override
     public SourceSection getSourceSection() {
         CompilerAsserts.neverPartOfCompilation();
-        TruffleLanguage.Env env = lookupContextReference(DbgLanguage.class).get();
+        TruffleLanguage.Env env = lookupContextReference(DbgLanguage.class).get().env;
         TruffleFile truffleFile = env.getPublicTruffleFile(file);
         Source src = null;
         String msg = "";
@@ -95,18 +103,18 @@ final class DbgNodeAt extends RootNode {
 
     @Override
     public Object execute(VirtualFrame frame) {
-        DbgAt at = (DbgAt) frame.getArguments()[0];
-        fillFrame(at, frame);
+        Object[] args = frame.getArguments();
+        fillFrame((DbgTraceStore) args[0], (int) args[1], frame);
         statement.executeStatement(frame);
         return 0;
     }
 
     @CompilerDirectives.TruffleBoundary
-    private void fillFrame(DbgAt at, Frame frame) {
-        for (DbgAtWatch w : at.actions) {
-            if (w.value != null) {
-                FrameSlot slot = frame.getFrameDescriptor().findFrameSlot(w.variableName);
-                frame.setInt(slot, w.value);
+    private void fillFrame(DbgTraceStore store, int index, Frame frame) {
+        for (int w = store.watchStart(index); w < store.watchEnd(index); w++) {
+            if (store.hasValue(w)) {
+                FrameSlot slot = frame.getFrameDescriptor().findFrameSlot(store.variable(w));
+                frame.setInt(slot, store.value(w));
             }
         }
     }
@@ -46,19 +46,18 @@ import com.oracle.truffle.api.Truffle;
 import com.oracle.truffle.api.frame.FrameDescriptor;
 import com.oracle.truffle.api.frame.VirtualFrame;
 import com.oracle.truffle.api.nodes.RootNode;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
 final class DbgProgramNode extends RootNode {
     private final DbgLanguage lang;
-    private final List<DbgAt> statements;
-    @CompilerDirectives.CompilationFinal
-    private boolean callTargetsInitialized;
+    private final String name;
+    private final DbgTraceStore statements;
+    @CompilerDirectives.CompilationFinal(dimensions = 1)
+    private volatile CallTarget[] targets;
 
-    DbgProgramNode(DbgLanguage language, List<DbgAt> statements) {
+    DbgProgramNode(DbgLanguage language, String name, DbgTraceStore statements) {
         super(language);
         this.lang = language;
+        this.name = name;
         this.statements = statements;
     }
 
@@ -68,36 +67,37 @@ final class DbgProgramNode extends RootNode {
         final Object insight = args.length > 0 ? args[0] : null;
         if (insight != null) {
             CompilerDirectives.transferToInterpreter();
-            for (DbgAt at : statements) {
-                at.register(insight);
-            }
+            lookupContextReference(DbgLanguage.class).get().register(name, insight, statements.statements());
         } else {
-            if (!callTargetsInitialized) {
+            if (targets == null) {
                 CompilerDirectives.transferToInterpreterAndInvalidate();
                 generateCallTargets();
-                callTargetsInitialized = true;
             }
-            for (DbgAt at : statements) {
-                at.replay();
+            final int size = statements.size();
+            for (int i = 0; i < size; i++) {
+                final int shape = statements.shape(i);
+                if (shape >= 0) {
+                    targets[shape].call(statements, i);
+                }
             }
         }
         return 0;
     }
 
-    private void generateCallTargets() {
-        Map<DbgAt, CallTarget> similar = new HashMap<>();
-        for (DbgAt at : statements) {
-            CallTarget target = similar.get(at);
-            if (target == null) {
-                FrameDescriptor fd = new FrameDescriptor();
-                for (DbgAtWatch w : at.actions) {
-                    fd.addFrameSlot(w.variableName);
-                }
-                DbgNodeAt atNode = new DbgNodeAt(lang, fd, at.file, at.line);
-                target = Truffle.getRuntime().createCallTarget(atNode);
-                similar.put(at, target);
+    private synchronized void generateCallTargets() {
+        if (targets != null) {
+            return;
+        }
+        CallTarget[] arr = new CallTarget[statements.shapeCount()];
+        for (int shape = 0; shape < arr.length; shape++) {
+            int index = statements.shapeRecord(shape);
+            FrameDescriptor fd = new FrameDescriptor();
+            for (int w = statements.watchStart(index); w < statements.watchEnd(index); w++) {
+                fd.findOrAddFrameSlot(statements.variable(w));
             }
-            at.assignTarget(target);
+            DbgNodeAt atNode = new DbgNodeAt(lang, fd, statements.file(index), statements.line(index));
+            arr[shape] = Truffle.getRuntime().createCallTarget(atNode);
         }
+        targets = arr;
     }
 }
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Compares two traces record by record and reports the first divergence.
+ * Both traces are streamed, records are compared by their hashes.
+ * <pre>
+ * $ java -cp debuglang.jar org.graalvm.tools.debuglang.DbgTraceDiff good.dbg bad.dbg
+ * </pre>
+ */
+public final class DbgTraceDiff {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    long records1;
+    long records2;
+    long equal;
+    long locationDiffers;
+    long valuesDiffer;
+    /** lines of both traces that are no part of a record nor value */
+    long notCompared;
+    long firstDivergence = -1;
+    String first1;
+    String first2;
+
+    private DbgTraceDiff() {
+    }
+
+    public static void main(String... args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: DbgTraceDiff first.dbg second.dbg");
+            System.exit(1);
+        }
+        DbgTraceDiff diff;
+        try (
+            Reader r1 = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8);
+            Reader r2 = Files.newBufferedReader(Paths.get(args[1]), StandardCharsets.UTF_8)
+        ) {
+            diff = diff(args[0], r1, args[1], r2);
+        }
+        diff.print(System.out);
+        System.exit(diff.firstDivergence == -1 && diff.notCompared == 0 ? 0 : 2);
+    }
+
+    static DbgTraceDiff diff(String name1, Reader trace1, String name2, Reader trace2) {
+        DbgTraceDiff diff = new DbgTraceDiff();
+        try (
+            DbgTraceReader it1 = new DbgTraceReader(name1, trace1);
+            DbgTraceReader it2 = new DbgTraceReader(name2, trace2)
+        ) {
+            for (;;) {
+                boolean has1 = it1.hasNext();
+                boolean has2 = it2.hasNext();
+                if (!has1 && !has2) {
+                    break;
+                }
+                DbgTraceReader.Record r1 = has1 ? it1.next() : null;
+                DbgTraceReader.Record r2 = has2 ? it2.next() : null;
+                diff.compare(r1, r2);
+            }
+            diff.notCompared = it1.skipped() + it2.skipped();
+        }
+        return diff;
+    }
+
+    private void compare(DbgTraceReader.Record r1, DbgTraceReader.Record r2) {
+        long index = Math.max(records1, records2) + 1;
+        if (r1 != null) {
+            records1++;
+        }
+        if (r2 != null) {
+            records2++;
+        }
+        if (r1 != null && r2 != null) {
+            if (locationHash(r1.at) != locationHash(r2.at)) {
+                locationDiffers++;
+            } else if (valuesHash(r1) != valuesHash(r2)) {
+                valuesDiffer++;
+            } else {
+                equal++;
+                return;
+            }
+        }
+        if (firstDivergence == -1) {
+            firstDivergence = index;
+            first1 = toTrace(r1);
+            first2 = toTrace(r2);
+        }
+    }
+
+    void print(PrintStream out) {
+        if (firstDivergence == -1 && notCompared == 0) {
+            out.println("traces are equal");
+        } else if (firstDivergence == -1) {
+            out.println("no divergence in compared records");
+        } else {
+            out.println("first divergence at record " + firstDivergence);
+            print(out, "< ", first1);
+            print(out, "> ", first2);
+        }
+        out.println("records: " + records1 + " / " + records2);
+        out.println("equal: " + equal);
+        out.println("location differs: " + locationDiffers);
+        out.println("values differ: " + valuesDiffer);
+        out.println("missing: " + Math.abs(records1 - records2));
+        if (notCompared > 0) {
+            out.println("lines not compared: " + notCompared);
+        }
+    }
+
+    private static void print(PrintStream out, String prefix, String trace) {
+        if (trace == null) {
+            out.println(prefix + "<end of trace>");
+            return;
+        }
+        for (String line : trace.split("\n")) {
+            out.println(prefix + line);
+        }
+    }
+
+    private static String toTrace(DbgTraceReader.Record r) {
+        if (r == null) {
+            return null;
+        }
+        DbgAt at = r.at;
+        Object[] values = new Object[at.actions.size()];
+        int i = 0;
+        for (DbgAtWatch w : at.actions) {
+            values[i++] = w.value;
+        }
+        StringBuilder sb = new StringBuilder(DbgSink.format(at.file, at.line, at.actions, values));
+        for (String text : r.texts) {
+            sb.append("  ").append(text).append('\n');
+        }
+        return sb.toString();
+    }
+
+    static long locationHash(DbgAt at) {
+        long hash = hash(FNV_OFFSET, at.file);
+        return mix(hash, at.line);
+    }
+
+    /**
+     * Integer values are hashed as numbers, other values by their text.
+     */
+    static long valuesHash(DbgTraceReader.Record r) {
+        long hash = FNV_OFFSET;
+        for (String text : r.texts) {
+            hash = hash(hash, text);
+        }
+        for (DbgAtWatch w : r.at.actions) {
+            hash = hash(hash, w.variableName);
+            // presence first, so watch n and watch n = -1 differ
+            hash = mix(hash, w.value == null ? 0 : 1);
+            if (w.value != null) {
+                hash = mix(hash, w.value);
+            }
+        }
+        return hash;
+    }
+
+    private static long hash(long hash, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+        }
+        return (hash ^ 0xff) * FNV_PRIME;
+    }
+
+    private static long mix(long hash, int value) {
+        for (int i = 0; i < 4; i++) {
+            hash = (hash ^ (value & 0xff)) * FNV_PRIME;
+            value >>>= 8;
+        }
+        return hash;
+    }
+}
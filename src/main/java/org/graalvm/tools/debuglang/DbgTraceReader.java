@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Streams records of a trace. The trace is parsed by the {@code dbg} grammar
+ * in a background thread and handed over through a bounded queue, so memory
+ * use doesn't depend on the size of the trace. The sink writes any value with
+ * {@code toString()}; watches of values other than integers reach the grammar
+ * without value and their text is kept in the {@link Record}.
+ */
+final class DbgTraceReader implements Iterator<DbgTraceReader.Record>, Closeable {
+    private static final Record END = new Record(new DbgAt("", 0, Collections.emptyList()), Collections.emptyList());
+    private final BlockingQueue<Record> queue = new ArrayBlockingQueue<>(1024);
+    private final Thread parser;
+    private volatile Exception error;
+    private volatile boolean closed;
+    private volatile long skipped;
+    private Record next;
+
+    DbgTraceReader(String name, Reader reader) {
+        Lines lines = new Lines(reader);
+        this.parser = new Thread(() -> {
+            try {
+                new DbgParser(new DbgLanguageGrammar(null, name, null, (at) -> put(new Record(at, lines.texts())))).parse(name, lines);
+            } catch (CancellationException ex) {
+                // closed
+            } catch (Exception ex) {
+                error = ex;
+            } finally {
+                skipped = lines.skipped;
+                if (!closed) {
+                    try {
+                        put(END);
+                    } catch (CancellationException ex) {
+                        // closed meanwhile
+                    }
+                }
+            }
+        }, "Parsing " + name);
+        this.parser.setDaemon(true);
+        this.parser.start();
+    }
+
+    /**
+     * Blocks while the queue is full. {@link #close()} clears the queue and
+     * interrupts, so the parser never stays blocked after close.
+     */
+    private void put(Record r) {
+        if (closed) {
+            throw new CancellationException();
+        }
+        try {
+            queue.put(r);
+        } catch (InterruptedException ex) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * @return number of lines that belong to no record nor value and were
+     *   skipped; known once all records were read
+     */
+    long skipped() {
+        return skipped;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = queue.take();
+            } catch (InterruptedException ex) {
+                throw DbgLanguage.raise(RuntimeException.class, ex);
+            }
+        }
+        if (next == END) {
+            queue.offer(END);
+            if (error != null) {
+                throw DbgLanguage.raise(RuntimeException.class, error);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Record next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Record r = next;
+        next = null;
+        return r;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        queue.clear();
+        parser.interrupt();
+    }
+
+    static final class Record {
+        final DbgAt at;
+        /**
+         * watches with values other than integers, as their text including
+         * continuation lines; these watches have no value in {@link #at}
+         */
+        final List<String> texts;
+
+        Record(DbgAt at, List<String> texts) {
+            this.at = at;
+            this.texts = texts;
+        }
+    }
+
+    /**
+     * Passes through locations and watches with integer values. Other
+     * watches are passed without value and their text, with continuation
+     * lines of multi-line values, is collected per record.
+     */
+    private static final class Lines extends Reader {
+        private static final Pattern WATCH = Pattern.compile("\\s*watch\\s+(\\S+)\\s*(=(.*))?");
+        private static final Pattern INTEGER = Pattern.compile("-?\\d{1,10}");
+        private final BufferedReader in;
+        /** texts per location read, taken when the grammar reports its record */
+        private final Queue<List<String>> records = new ArrayDeque<>();
+        private List<String> current;
+        private boolean continued;
+        private String line = "";
+        private int at;
+        long skipped;
+
+        Lines(Reader in) {
+            this.in = new BufferedReader(in);
+        }
+
+        List<String> texts() {
+            List<String> texts = records.poll();
+            return texts == null ? Collections.emptyList() : texts;
+        }
+
+        @Override
+        public int read(char[] buf, int off, int len) throws IOException {
+            while (at == line.length()) {
+                String l = in.readLine();
+                if (l == null) {
+                    return -1;
+                }
+                String accepted = accept(l);
+                if (accepted != null) {
+                    line = accepted + '\n';
+                    at = 0;
+                }
+            }
+            int n = Math.min(len, line.length() - at);
+            line.getChars(at, at + n, buf, off);
+            at += n;
+            return n;
+        }
+
+        private String accept(String l) {
+            String t = l.trim();
+            if (t.startsWith("at ")) {
+                current = new ArrayList<>();
+                records.add(current);
+                continued = false;
+                return l;
+            }
+            Matcher m = WATCH.matcher(l);
+            if (m.matches()) {
+                continued = false;
+                if (m.group(2) == null || current == null) {
+                    return l;
+                }
+                String value = m.group(3).trim();
+                if (INTEGER.matcher(value).matches()) {
+                    long v = Long.parseLong(value);
+                    if (v >= Integer.MIN_VALUE && v <= Integer.MAX_VALUE) {
+                        return l;
+                    }
+                }
+                current.add(t);
+                continued = true;
+                return "  watch " + m.group(1);
+            }
+            if (continued) {
+                int last = current.size() - 1;
+                current.set(last, current.get(last) + '\n' + l);
+                return null;
+            }
+            if (t.isEmpty()) {
+                return l;
+            }
+            skipped++;
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Reports statistics of a trace in a single pass. Memory grows with the
+ * number of distinct locations and variables, not with the trace length.
+ * <pre>
+ * $ java -cp debuglang.jar org.graalvm.tools.debuglang.DbgTraceStats log.dbg
+ * </pre>
+ */
+public final class DbgTraceStats {
+    long records;
+    /** watches whose value isn't an integer and unreadable lines */
+    long skipped;
+    final Map<String, long[]> hits = new LinkedHashMap<>();
+    final Map<String, Variable> variables = new LinkedHashMap<>();
+
+    private DbgTraceStats() {
+    }
+
+    public static void main(String... args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: DbgTraceStats log.dbg");
+            System.exit(1);
+        }
+        DbgTraceStats stats;
+        try (Reader r = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            stats = analyze(args[0], r);
+        }
+        stats.print(System.out);
+    }
+
+    static DbgTraceStats analyze(String name, Reader trace) {
+        DbgTraceStats stats = new DbgTraceStats();
+        try (DbgTraceReader it = new DbgTraceReader(name, trace)) {
+            while (it.hasNext()) {
+                DbgTraceReader.Record r = it.next();
+                stats.add(r.at);
+                stats.skipped += r.texts.size();
+            }
+            stats.skipped += it.skipped();
+        }
+        return stats;
+    }
+
+    private void add(DbgAt at) {
+        records++;
+        hits.computeIfAbsent(at.file + ":" + at.line, (k) -> new long[1])[0]++;
+        for (DbgAtWatch w : at.actions) {
+            if (w.value != null) {
+                variables.computeIfAbsent(w.variableName, Variable::new).add(w.value);
+            }
+        }
+    }
+
+    void print(PrintStream out) {
+        out.println("records: " + records);
+        if (skipped > 0) {
+            out.println("skipped: " + skipped);
+        }
+        out.println("locations:");
+        for (Map.Entry<String, long[]> e : hits.entrySet()) {
+            out.println("  " + e.getKey() + " hits=" + e.getValue()[0]);
+        }
+        out.println("variables:");
+        for (Variable v : variables.values()) {
+            out.println(String.format(Locale.ROOT, "  %s count=%d min=%d max=%d mean=%.2f distinct~%d p50~%d p90~%d p99~%d",
+                v.name, v.count, v.min, v.max, v.mean(), v.distinct.estimate(),
+                v.quantiles.quantile(0.5), v.quantiles.quantile(0.9), v.quantiles.quantile(0.99)
+            ));
+        }
+    }
+
+    static final class Variable {
+        final String name;
+        long count;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        long sum;
+        final HyperLogLog distinct = new HyperLogLog();
+        final Reservoir quantiles = new Reservoir();
+
+        Variable(String name) {
+            this.name = name;
+        }
+
+        void add(long value) {
+            count++;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value;
+            distinct.add(value);
+            quantiles.add(value);
+        }
+
+        double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+    }
+
+    /**
+     * Distinct count estimate with 2<sup>12</sup> one byte registers, about
+     * 1.6% standard error.
+     */
+    static final class HyperLogLog {
+        private static final int P = 12;
+        private static final int M = 1 << P;
+        private final byte[] registers = new byte[M];
+
+        void add(long value) {
+            long hash = mix(value);
+            int index = (int) (hash >>> (64 - P));
+            int rank = Long.numberOfLeadingZeros((hash << P) | (1L << (P - 1))) + 1;
+            if (rank > registers[index]) {
+                registers[index] = (byte) rank;
+            }
+        }
+
+        long estimate() {
+            double sum = 0;
+            int zeros = 0;
+            for (byte r : registers) {
+                sum += 1.0 / (1L << r);
+                if (r == 0) {
+                    zeros++;
+                }
+            }
+            double estimate = 0.7213 / (1 + 1.079 / M) * M * M / sum;
+            if (estimate <= 2.5 * M && zeros > 0) {
+                estimate = M * Math.log((double) M / zeros);
+            }
+            return Math.round(estimate);
+        }
+
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+    }
+
+    /**
+     * Uniform sample of fixed size to estimate quantiles from.
+     */
+    static final class Reservoir {
+        private static final int SIZE = 1024;
+        private final long[] sample = new long[SIZE];
+        private final Random random = new Random(SIZE);
+        private long seen;
+        private boolean sorted;
+
+        void add(long value) {
+            seen++;
+            if (seen <= SIZE) {
+                sample[(int) seen - 1] = value;
+            } else {
+                long at = (long) (random.nextDouble() * seen);
+                if (at < SIZE) {
+                    sample[(int) at] = value;
+                }
+            }
+            sorted = false;
+        }
+
+        long quantile(double q) {
+            int size = (int) Math.min(seen, SIZE);
+            if (size == 0) {
+                return 0;
+            }
+            if (!sorted) {
+                Arrays.sort(sample, 0, size);
+                sorted = true;
+            }
+            return sample[Math.min(size - 1, (int) (q * size))];
+        }
+    }
+}
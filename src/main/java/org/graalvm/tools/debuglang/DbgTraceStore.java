@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar representation of a parsed {@code .dbg} source. File and variable
+ * names are interned into tables and records keep only their ids, lines and
+ * values in primitive arrays. Watches of record {@code i} are at indexes
+ * {@code watchStart[i]} to {@code watchStart[i + 1]}. The few locations that
+ * aren't plain records, like dumps, functions and line ranges, are kept as
+ * they are.
+ */
+final class DbgTraceStore {
+    private final List<String> files = new ArrayList<>();
+    private final Map<String, Integer> fileIds = new HashMap<>();
+    private final List<String> variables = new ArrayList<>();
+    private final Map<String, Integer> variableIds = new HashMap<>();
+    private final Map<Shape, Integer> shapeIds = new HashMap<>();
+    private final Map<Integer, DbgAt> special = new HashMap<>();
+
+    private int size;
+    private int[] recordFile = new int[16];
+    private int[] recordLine = new int[16];
+    private int[] recordShape = new int[16];
+    private int[] watchStart = new int[17];
+
+    private int watches;
+    private int[] watchVariable = new int[16];
+    private int[] watchValue = new int[16];
+    private long[] watchHasValue = new long[1];
+
+    private int[] shapeRecord = new int[4];
+
+    void add(DbgAt at) {
+        if (size == recordFile.length) {
+            int len = recordFile.length * 2;
+            recordFile = Arrays.copyOf(recordFile, len);
+            recordLine = Arrays.copyOf(recordLine, len);
+            recordShape = Arrays.copyOf(recordShape, len);
+            watchStart = Arrays.copyOf(watchStart, len + 1);
+        }
+        final int index = size++;
+        recordFile[index] = intern(files, fileIds, at.file == null ? at.function : at.file);
+        recordLine[index] = at.line;
+        int[] vars = new int[at.actions.size()];
+        int i = 0;
+        for (DbgAtWatch w : at.actions) {
+            vars[i++] = addWatch(w);
+        }
+        watchStart[index + 1] = watches;
+        if (at.dump || at.account || at.count || at.function != null || at.line != at.lastLine) {
+            special.put(index, at);
+        }
+        recordShape[index] = at.dump || at.account || at.count || at.function != null ? -1 : shape(index, vars);
+    }
+
+    private int addWatch(DbgAtWatch w) {
+        if (watches == watchVariable.length) {
+            int len = watchVariable.length * 2;
+            watchVariable = Arrays.copyOf(watchVariable, len);
+            watchValue = Arrays.copyOf(watchValue, len);
+            watchHasValue = Arrays.copyOf(watchHasValue, (len + 63) / 64);
+        }
+        int var = intern(variables, variableIds, w.variableName);
+        watchVariable[watches] = var;
+        if (w.value != null) {
+            watchValue[watches] = w.value;
+            watchHasValue[watches >> 6] |= 1L << watches;
+        }
+        watches++;
+        return var;
+    }
+
+    private int shape(int index, int[] vars) {
+        int[] key = new int[vars.length + 2];
+        key[0] = recordFile[index];
+        key[1] = recordLine[index];
+        Arrays.sort(vars);
+        int len = 2;
+        for (int i = 0; i < vars.length; i++) {
+            if (i == 0 || vars[i] != vars[i - 1]) {
+                key[len++] = vars[i];
+            }
+        }
+        Shape shape = new Shape(Arrays.copyOf(key, len));
+        Integer id = shapeIds.get(shape);
+        if (id == null) {
+            id = shapeIds.size();
+            shapeIds.put(shape, id);
+            if (id == shapeRecord.length) {
+                shapeRecord = Arrays.copyOf(shapeRecord, id * 2);
+            }
+            shapeRecord[id] = index;
+        }
+        return id;
+    }
+
+    private static int intern(List<String> names, Map<String, Integer> ids, String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = names.size();
+            names.add(name);
+            ids.put(name, id);
+        }
+        return id;
+    }
+
+    /**
+     * Releases the spare capacity once all records are added.
+     */
+    DbgTraceStore trim() {
+        recordFile = Arrays.copyOf(recordFile, size);
+        recordLine = Arrays.copyOf(recordLine, size);
+        recordShape = Arrays.copyOf(recordShape, size);
+        watchStart = Arrays.copyOf(watchStart, size + 1);
+        watchVariable = Arrays.copyOf(watchVariable, watches);
+        watchValue = Arrays.copyOf(watchValue, watches);
+        watchHasValue = Arrays.copyOf(watchHasValue, (watches + 63) / 64);
+        shapeRecord = Arrays.copyOf(shapeRecord, shapeIds.size());
+        shapeIds.clear();
+        return this;
+    }
+
+    int size() {
+        return size;
+    }
+
+    String file(int index) {
+        return files.get(recordFile[index]);
+    }
+
+    int line(int index) {
+        return recordLine[index];
+    }
+
+    /**
+     * @return id shared by all records with the same location and variables
+     *   or {@code -1} when the record isn't replayable
+     */
+    int shape(int index) {
+        return recordShape[index];
+    }
+
+    int shapeCount() {
+        return shapeRecord.length;
+    }
+
+    /**
+     * @return index of the first record of given shape
+     */
+    int shapeRecord(int shape) {
+        return shapeRecord[shape];
+    }
+
+    int watchStart(int index) {
+        return watchStart[index];
+    }
+
+    int watchEnd(int index) {
+        return watchStart[index + 1];
+    }
+
+    String variable(int watch) {
+        return variables.get(watchVariable[watch]);
+    }
+
+    boolean hasValue(int watch) {
+        return (watchHasValue[watch >> 6] & (1L << watch)) != 0;
+    }
+
+    int value(int watch) {
+        return watchValue[watch];
+    }
+
+    DbgAt get(int index) {
+        DbgAt at = special.get(index);
+        if (at != null) {
+            return at;
+        }
+        LinkedList<DbgAtWatch> actions = new LinkedList<>();
+        for (int w = watchStart(index); w < watchEnd(index); w++) {
+            actions.add(new DbgAtWatch(variable(w), hasValue(w) ? value(w) : null));
+        }
+        return new DbgAt(file(index), line(index), actions);
+    }
+
+    /**
+     * @return the records as a list of locations, created on demand
+     */
+    List<DbgAt> statements() {
+        return new AbstractList<DbgAt>() {
+            @Override
+            public DbgAt get(int index) {
+                return DbgTraceStore.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private static final class Shape {
+        private final int[] key;
+
+        Shape(int[] key) {
+            this.key = key;
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(key);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Shape && Arrays.equals(key, ((Shape) obj).key);
+        }
+    }
+}
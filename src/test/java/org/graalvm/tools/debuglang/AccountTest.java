@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2019, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import java.io.ByteArrayOutputStream;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class AccountTest {
+    @Test
+    public void accountFunctionAndLine() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Context c = Context.newBuilder().allowAllAccess(true).out(os).err(os).build();
+        c.initialize("dbg");
+        Value fib = c.eval(Source.newBuilder("js",
+            "(function fib(n) {\n"
+            + "  if (n < 2) return 1;\n"
+            + "  let garbage = new Array(1000).fill(n);\n"
+            + "  return fib(n - 1) + fib(n - 2);\n"
+            + "})\n",
+            "fib.js"
+        ).buildLiteral());
+        Function<Source, ?> insight = c.getEngine().getInstruments().get("insight").lookup(Function.class);
+
+        insight.apply(Source.newBuilder("dbg",
+            "at function fib account\n"
+            + "at fib.js:3 account\n", "account.dbg"
+        ).buildLiteral());
+        c.eval("js", "'load insight'");
+
+        assertEquals(8, fib.execute(5).asInt());
+        assertEquals("Nothing is written per hit", "", os.toString("UTF-8"));
+        c.close();
+
+        String trace = os.toString("UTF-8");
+        assertEquals(trace, 15, value(trace, "fib.js:1", "calls"));
+        assertEquals(trace, 7, value(trace, "fib.js:3", "calls"));
+        assertTrue(trace, value(trace, "fib.js:3", "allocatedKiB") > 0);
+        assertTrue("Function includes its statements: " + trace,
+            value(trace, "fib.js:1", "allocatedKiB") >= value(trace, "fib.js:3", "allocatedKiB"));
+
+        try (Context replay = Context.create()) {
+            assertEquals("Summary is a trace", 0, replay.eval(Source.newBuilder("dbg", trace, "summary.dbg").buildLiteral()).asInt());
+        }
+    }
+
+    private static int value(String trace, String location, String name) {
+        Matcher m = Pattern.compile("at " + Pattern.quote(location) + "\n(  watch .*\n)*?  watch " + name + " = (\\d+)\n").matcher(trace);
+        assertTrue(location + " " + name + " in " + trace, m.find());
+        return Integer.parseInt(m.group(2));
+    }
+}
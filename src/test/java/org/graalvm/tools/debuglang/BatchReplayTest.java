@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2019, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.graalvm.polyglot.Source;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class BatchReplayTest {
+    @Test
+    public void replayManyTraces() throws Exception {
+        List<Source> traces = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int n = 0; n <= i; n++) {
+                sb.append("at fib.js:5\n  watch n = ").append(n).append("\n  watch n1 = ").append(i).append('\n');
+            }
+            traces.add(Source.newBuilder("dbg", sb.toString(), "trace" + i + ".dbg").buildLiteral());
+        }
+        traces.add(Source.newBuilder("dbg", "at fib.js watch n = 1\n", "broken.dbg").buildLiteral());
+
+        Map<String, Integer> sums = new ConcurrentHashMap<>();
+        AtomicInteger records = new AtomicInteger();
+        Map<String, Throwable> failures;
+        try (DbgBatchReplay batch = new DbgBatchReplay(4)) {
+            failures = batch.replay(traces, (trace, file, line, values) -> {
+                assertEquals("fib.js", file);
+                assertEquals(5, line);
+                sums.merge(trace, (Integer) values.get("n"), Integer::sum);
+                records.incrementAndGet();
+            });
+        }
+
+        assertEquals(failures.toString(), 1, failures.size());
+        assertTrue(failures.containsKey("broken.dbg"));
+        assertEquals(20 * 21 / 2, records.get());
+        for (int i = 0; i < 20; i++) {
+            assertEquals("trace" + i, Integer.valueOf(i * (i + 1) / 2), sums.get("trace" + i + ".dbg"));
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2019, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.function.Function;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BudgetTest {
+    private Context ctx;
+
+    @Before
+    public void enterContext() {
+        ctx = Context.newBuilder().err(new ByteArrayOutputStream()).build();
+        ctx.enter();
+    }
+
+    @After
+    public void leaveContext() {
+        ctx.leave();
+        ctx.close();
+    }
+
+    @Test
+    public void throttleAndRelax() {
+        DbgAt at = new DbgAt("fib.js", 5, Collections.emptyList());
+        DbgBudget budget = new DbgBudget(0, 100, 0);
+        assertTrue(budget.enabled);
+
+        budget.charge(at, 10, 1000, DbgBudget.WINDOW);
+        assertEquals("Ten times over budget", 10, hitsUntilSample(budget, at));
+
+        budget.charge(at, 0, 0, 2 * DbgBudget.WINDOW);
+        assertEquals("Sampling relaxed", 5, hitsUntilSample(budget, at));
+    }
+
+    @Test
+    public void chargeFromManyThreads() throws Exception {
+        DbgAt at = new DbgAt("fib.js", 5, Collections.emptyList());
+        DbgBudget budget = new DbgBudget(0, 100, 0);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 250; j++) {
+                    budget.charge(at, 0, 1, 1);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        budget.charge(at, 0, 0, DbgBudget.WINDOW);
+        assertEquals("All charges counted", 10, hitsUntilSample(budget, at));
+    }
+
+    @Test
+    public void suspendAndResume() {
+        DbgAt at = new DbgAt("fib.js", 5, Collections.emptyList());
+        DbgBudget budget = new DbgBudget(1, 0, 0);
+        long now = 0;
+        while (!budget.isSuspended()) {
+            now += DbgBudget.WINDOW;
+            budget.charge(at, DbgBudget.WINDOW, 0, now);
+        }
+        assertFalse("Still suspended", budget.resume(now + 1));
+        assertTrue("Resumed in next window", budget.resume(now + DbgBudget.WINDOW));
+        assertEquals("Every hit recorded after resume", 1, hitsUntilSample(budget, at));
+        assertEquals(1, hitsUntilSample(budget, at));
+    }
+
+    @Test
+    public void budgetOptionsAccepted() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Context c = Context.newBuilder().allowAllAccess(true).out(os)
+                .option("dbg.OverheadBudget", "2")
+                .option("dbg.OutputBudget", "5000000")
+                .build();
+        Value fib = c.eval(Source.newBuilder("js",
+                "(function fib(n) {\n"
+                + "  if (n < 2) return 1;\n"
+                + "  return fib(n - 1) + fib(n - 2);\n"
+                + "})\n",
+                "fib.js"
+        ).buildLiteral());
+        Function<Source,Closeable> insight = c.getEngine().getInstruments().get("insight").lookup(Function.class);
+        insight.apply(Source.newBuilder("dbg", "at fib.js:3 watch n", "budget.dbg").buildLiteral());
+
+        assertEquals(8, fib.execute(5).asInt());
+        assertTrue(os.toString("UTF-8"), os.toString("UTF-8").startsWith("at fib.js:3\n  watch n = 5\n"));
+    }
+
+    private static int hitsUntilSample(DbgBudget budget, DbgAt at) {
+        int hits = 1;
+        while (!budget.sample(at)) {
+            hits++;
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2019, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import java.io.ByteArrayOutputStream;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Function;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class CollectorTest {
+    private static final String EXPECTED =
+        "at fib.js:5\n  watch n = 2\n"
+        + "at fib.js:5\n  watch n = 3\n";
+
+    @Test
+    public void streamToCollector() throws Exception {
+        Path log = Files.createTempFile("collected", ".dbg");
+        try (DbgCollector collector = new DbgCollector(0, log)) {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            runFib(os, collector.getPort());
+            assertEquals("Nothing on the output", "", os.toString("UTF-8"));
+            assertEquals(EXPECTED, new String(Files.readAllBytes(log), StandardCharsets.UTF_8));
+        } finally {
+            Files.delete(log);
+        }
+    }
+
+    @Test
+    public void bufferUntilCollectorIsUp() throws Exception {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        Path log = Files.createTempFile("collected", ".dbg");
+        DbgCollector[] collector = { null };
+        try {
+            Thread late = new Thread(() -> {
+                try {
+                    Thread.sleep(300);
+                    collector[0] = new DbgCollector(port, log);
+                } catch (Exception ex) {
+                    throw new IllegalStateException(ex);
+                }
+            });
+            late.start();
+            runFib(new ByteArrayOutputStream(), port);
+            late.join();
+            assertEquals(EXPECTED, new String(Files.readAllBytes(log), StandardCharsets.UTF_8));
+        } finally {
+            if (collector[0] != null) {
+                collector[0].close();
+            }
+            Files.delete(log);
+        }
+    }
+
+    private static void runFib(ByteArrayOutputStream os, int port) throws Exception {
+        try (Context c = Context.newBuilder().allowAllAccess(true).out(os).err(os).
+                option("dbg.Collector", "localhost:" + port).build()) {
+            c.initialize("dbg");
+            Value fib = c.eval(Source.newBuilder("js",
+                "(function fib(n) {\n"
+                + "  if (n < 2) return 1;\n"
+                + "  let n1 = fib(n - 1);\n"
+                + "  let n2 = fib(n - 2);\n"
+                + "  return n1 + n2;\n"
+                + "})\n",
+                "fib.js"
+            ).buildLiteral());
+            Function<Source, ?> insight = c.getEngine().getInstruments().get("insight").lookup(Function.class);
+            insight.apply(Source.newBuilder("dbg", "at fib.js:5 watch n\n", "debug.dbg").buildLiteral());
+            assertEquals(3, fib.execute(3).asInt());
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2019, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import java.io.ByteArrayOutputStream;
+import java.util.function.Function;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class CoverageTest {
+    @Test
+    public void countLines() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Context c = Context.newBuilder().allowAllAccess(true).out(os).err(os).build();
+        c.initialize("dbg");
+        Function<Source, ?> insight = c.getEngine().getInstruments().get("insight").lookup(Function.class);
+        insight.apply(Source.newBuilder("dbg",
+            "at src/*.js:* count\n", "coverage.dbg"
+        ).buildLiteral());
+        c.eval("js", "'load insight'");
+
+        Value fib = c.eval(Source.newBuilder("js",
+            "(function fib(n) {\n"
+            + "  if (n < 2) return 1;\n"
+            + "  return fib(n - 1) + fib(n - 2);\n"
+            + "  function dead() {\n"
+            + "    return 0;\n"
+            + "  }\n"
+            + "})\n",
+            "src/fib.js"
+        ).buildLiteral());
+        c.eval(Source.newBuilder("js", "42\n", "other.js").buildLiteral());
+
+        assertEquals(5, fib.execute(4).asInt());
+        assertEquals("Nothing is written per hit", "", os.toString("UTF-8"));
+        c.close();
+
+        String coverage = os.toString("UTF-8");
+        // line 2 has two statements: nine conditions and five returns
+        assertEquals(
+            "at src/fib.js:1\n  watch hits = 1\n"
+            + "at src/fib.js:2\n  watch hits = 14\n"
+            + "at src/fib.js:3\n  watch hits = 4\n"
+            + "at src/fib.js:5\n  watch hits = 0\n",
+            coverage
+        );
+
+        try (Context replay = Context.create()) {
+            assertEquals("Coverage is a trace", 0, replay.eval(Source.newBuilder("dbg", coverage, "replay.dbg").buildLiteral()).asInt());
+        }
+    }
+
+    @Test
+    public void sourcesWithSameName() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Context c = Context.newBuilder().allowAllAccess(true).out(os).err(os).build();
+        c.initialize("dbg");
+        Function<Source, ?> insight = c.getEngine().getInstruments().get("insight").lookup(Function.class);
+        insight.apply(Source.newBuilder("dbg",
+            "at a.js:* count\n", "coverage.dbg"
+        ).buildLiteral());
+        c.eval("js", "'load insight'");
+
+        c.eval(Source.newBuilder("js", "1\n", "a.js").buildLiteral());
+        c.eval(Source.newBuilder("js", "1;\n2;\n3;\n4;\n", "a.js").buildLiteral());
+        c.close();
+
+        assertEquals(
+            "at a.js:1\n  watch hits = 2\n"
+            + "at a.js:2\n  watch hits = 1\n"
+            + "at a.js:3\n  watch hits = 1\n"
+            + "at a.js:4\n  watch hits = 1\n",
+            os.toString("UTF-8")
+        );
+    }
+
+    @Test
+    public void countsDontWrap() {
+        int[] counts = { 0, Integer.MAX_VALUE - 1 };
+        DbgCount.Lines.hit(counts, 1);
+        DbgCount.Lines.hit(counts, 1);
+        assertEquals(Integer.MAX_VALUE, counts[1]);
+    }
+}
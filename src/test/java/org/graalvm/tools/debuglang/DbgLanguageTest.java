@@ -40,6 +40,9 @@
  */
 package org.graalvm.tools.debuglang;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import org.graalvm.polyglot.Context;
 import org.graalvm.polyglot.Value;
 import org.junit.Assert;
@@ -83,4 +86,62 @@ public class DbgLanguageTest {
         Assert.assertEquals(0, res.asInt());
     }
 
+    @Test
+    public void variablesNamedLikeActions() throws Exception {
+        List<DbgAt> ats = new ArrayList<>();
+        new DbgParser(new DbgLanguageGrammar(null, "names.dbg", null, ats::add)).parseString(""
+                + "at fib.js:3\n"
+                + "  watch dump = 1\n"
+                + "  watch on = 2\n"
+                + "  watch function = 3\n"
+                + "  watch account = 4\n"
+                + "  watch count = 5\n"
+                + "at fib.js:4 dump\n"
+                + "at function on on enter watch on\n"
+                + "at fib.js:5 account\n"
+                + "at function account account\n"
+                + "at fib.js:6 count\n"
+                + "at function count count\n"
+                + "at fib.js:7 watch count\n"
+        );
+        Assert.assertEquals(8, ats.size());
+        Assert.assertEquals(Arrays.asList("count", "account", "function", "on", "dump"), names(ats.get(0)));
+        Assert.assertTrue(ats.get(1).dump);
+        Assert.assertEquals("on", ats.get(2).function);
+        Assert.assertEquals(Arrays.asList("on"), names(ats.get(2)));
+        Assert.assertTrue(ats.get(3).account);
+        Assert.assertTrue(ats.get(4).account);
+        Assert.assertEquals("account", ats.get(4).function);
+        Assert.assertTrue(ats.get(5).count);
+        Assert.assertTrue(ats.get(6).count);
+        Assert.assertEquals("count", ats.get(6).function);
+        Assert.assertEquals(Arrays.asList("count"), names(ats.get(7)));
+    }
+
+    @Test
+    public void lineNumbersInRange() throws Exception {
+        List<DbgAt> ats = new ArrayList<>();
+        new DbgParser(new DbgLanguageGrammar(null, "min.dbg", null, ats::add)).parseString(
+            "at f.js:2147483647\n  watch n = -2147483648\n"
+        );
+        Assert.assertEquals(Integer.MAX_VALUE, ats.get(0).line);
+        Assert.assertEquals(Integer.valueOf(Integer.MIN_VALUE), ats.get(0).actions.get(0).value);
+
+        for (String location : new String[] { "f.js:2147483648", "f.js:1-2147483648", "f.js:2147483648-2147483648" }) {
+            try {
+                new DbgParser(new DbgLanguageGrammar(null, "bad.dbg", null, ats::add)).parseString("at " + location + " watch n\n");
+                Assert.fail("Should be rejected: " + location);
+            } catch (Exception ex) {
+                Assert.assertTrue(ex.getMessage(), ex.getMessage().contains("Line number out of range: 2147483648"));
+            }
+        }
+    }
+
+    private static List<String> names(DbgAt at) {
+        List<String> names = new ArrayList<>();
+        for (DbgAtWatch w : at.actions) {
+            names.add(w.variableName);
+        }
+        return names;
+    }
 }
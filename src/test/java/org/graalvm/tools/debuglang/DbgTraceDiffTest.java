@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2019, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+public class DbgTraceDiffTest {
+    private static final String GOOD = ""
+            + "at fib.js:5\n  watch n = 2\n"
+            + "at fib.js:5\n  watch n = 3\n"
+            + "at fib.js:5\n  watch n = 2\n"
+            + "at fib.js:5\n  watch n = 4\n";
+
+    @Test
+    public void equalTraces() {
+        DbgTraceDiff diff = DbgTraceDiff.diff("a.dbg", new StringReader(GOOD), "b.dbg", new StringReader(GOOD));
+        assertEquals(-1, diff.firstDivergence);
+        assertEquals(4, diff.equal);
+        assertEquals(4, diff.records1);
+        assertEquals(4, diff.records2);
+    }
+
+    @Test
+    public void firstDivergence() throws Exception {
+        String bad = ""
+            + "at fib.js:5\n  watch n = 2\n"
+            + "at fib.js:5\n  watch n = 3\n"
+            + "at fib.js:5\n  watch n = 7\n"
+            + "at fib.js:4\n  watch n = 4\n"
+            + "at fib.js:5\n  watch n = 5\n";
+        DbgTraceDiff diff = DbgTraceDiff.diff("good.dbg", new StringReader(GOOD), "bad.dbg", new StringReader(bad));
+        assertEquals(3, diff.firstDivergence);
+        assertEquals(2, diff.equal);
+        assertEquals(1, diff.valuesDiffer);
+        assertEquals(1, diff.locationDiffers);
+        assertEquals(5, diff.records2);
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        diff.print(new PrintStream(os, true, "UTF-8"));
+        assertEquals(""
+            + "first divergence at record 3\n"
+            + "< at fib.js:5\n"
+            + "<   watch n = 2\n"
+            + "> at fib.js:5\n"
+            + ">   watch n = 7\n"
+            + "records: 4 / 5\n"
+            + "equal: 2\n"
+            + "location differs: 1\n"
+            + "values differ: 1\n"
+            + "missing: 1\n",
+            os.toString("UTF-8").replace(System.lineSeparator(), "\n"));
+    }
+
+    @Test
+    public void negativeAndOtherValues() {
+        String trace = ""
+            + "at a.js:1\n  watch n = -5\n  watch s = hello world\n"
+            + "  watch f = function f() {\n  return 1;\n}\n"
+            + "at a.js:2\n  watch n = 1\n";
+        DbgTraceDiff diff = DbgTraceDiff.diff("a.dbg", new StringReader(trace), "b.dbg", new StringReader(trace.replace("-5", "-6")));
+        assertEquals(1, diff.firstDivergence);
+        assertEquals(1, diff.valuesDiffer);
+        assertEquals(1, diff.equal);
+    }
+
+    @Test
+    public void otherValuesCompared() throws Exception {
+        String trace = ""
+            + "at a.js:1\n  watch d = 2.5\n"
+            + "at a.js:2\n  watch n = 1\n  watch s = hello\n"
+            + "at a.js:3\n  watch f = function f() {\n  return 1;\n}\n";
+        DbgTraceDiff same = DbgTraceDiff.diff("a.dbg", new StringReader(trace), "b.dbg", new StringReader(trace));
+        assertEquals(-1, same.firstDivergence);
+        assertEquals(3, same.equal);
+
+        assertEquals(1, DbgTraceDiff.diff("a.dbg", new StringReader(trace), "b.dbg", new StringReader(trace.replace("2.5", "2.6"))).firstDivergence);
+        assertEquals(2, DbgTraceDiff.diff("a.dbg", new StringReader(trace), "b.dbg", new StringReader(trace.replace("hello", "world"))).firstDivergence);
+        DbgTraceDiff body = DbgTraceDiff.diff("a.dbg", new StringReader(trace), "b.dbg", new StringReader(trace.replace("return 1", "return 2")));
+        assertEquals(3, body.firstDivergence);
+        assertEquals(1, body.valuesDiffer);
+    }
+
+    @Test
+    public void neverEqualWhenSkipping() throws Exception {
+        String trace = "at a.js:1\n  watch n = 1\n";
+        DbgTraceDiff diff = DbgTraceDiff.diff("a.dbg", new StringReader(trace), "b.dbg", new StringReader("garbage\n" + trace));
+        assertEquals(-1, diff.firstDivergence);
+        assertEquals(1, diff.notCompared);
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        diff.print(new PrintStream(os, true, "UTF-8"));
+        String out = os.toString("UTF-8").replace(System.lineSeparator(), "\n");
+        assertFalse(out, out.contains("traces are equal"));
+        assertTrue(out, out.contains("lines not compared: 1\n"));
+    }
+
+    @Test
+    public void missingValueDiffersFromMinusOne() {
+        DbgTraceDiff diff = DbgTraceDiff.diff(
+            "a.dbg", new StringReader("at a.js:1\n  watch n\n"),
+            "b.dbg", new StringReader("at a.js:1\n  watch n = -1\n")
+        );
+        assertEquals(1, diff.firstDivergence);
+        assertEquals(1, diff.valuesDiffer);
+    }
+
+    @Test
+    public void closeStopsBlockedParser() throws Exception {
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            big.append("at fib.js:5\n  watch n = ").append(i).append('\n');
+        }
+        DbgTraceReader reader = new DbgTraceReader("big.dbg", new StringReader(big.toString()));
+        assertTrue(reader.hasNext());
+        Thread parser = parser("big.dbg");
+        while (parser.getState() != Thread.State.WAITING) {
+            Thread.sleep(10);
+        }
+        reader.close();
+        parser.join(5000);
+        assertFalse("Parser of a closed reader finished", parser.isAlive());
+    }
+
+    @Test
+    public void failedTraceDoesNotLeakTheOther() throws Exception {
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            big.append("at fib.js:5\n  watch n = ").append(i).append('\n');
+        }
+        try {
+            DbgTraceDiff.diff("broken.dbg", new StringReader("at fib.js\n"), "other.dbg", new StringReader(big.toString()));
+            fail("Broken trace should fail");
+        } catch (RuntimeException ex) {
+            // expected
+        }
+        Thread parser = parser("other.dbg");
+        if (parser != null) {
+            parser.join(5000);
+            assertFalse("Parser of other.dbg finished", parser.isAlive());
+        }
+    }
+
+    private static Thread parser(String name) {
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().equals("Parsing " + name)) {
+                return t;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2019, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class DbgTraceStatsTest {
+    @Test
+    public void statistics() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= 10000; i++) {
+            sb.append("at fib.js:5\n  watch n = ").append(i).append("\n  watch k = 7\n");
+            if (i % 10 == 0) {
+                sb.append("at fib.js:3\n  watch n\n");
+            }
+        }
+        DbgTraceStats stats = DbgTraceStats.analyze("log.dbg", new StringReader(sb.toString()));
+
+        assertEquals(11000, stats.records);
+        assertEquals(10000, stats.hits.get("fib.js:5")[0]);
+        assertEquals(1000, stats.hits.get("fib.js:3")[0]);
+
+        DbgTraceStats.Variable n = stats.variables.get("n");
+        assertEquals(10000, n.count);
+        assertEquals(1, n.min);
+        assertEquals(10000, n.max);
+        assertEquals(5000.5, n.mean(), 0.001);
+        assertEquals(10000, n.distinct.estimate(), 500);
+        assertEquals(5000, n.quantiles.quantile(0.5), 500);
+        assertEquals(9000, n.quantiles.quantile(0.9), 500);
+
+        DbgTraceStats.Variable k = stats.variables.get("k");
+        assertEquals(1, k.distinct.estimate());
+        assertEquals(7, k.quantiles.quantile(0.99));
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        stats.print(new PrintStream(os, true, "UTF-8"));
+        String out = os.toString("UTF-8");
+        assertTrue(out, out.contains("  fib.js:3 hits=1000\n"));
+        assertTrue(out, out.contains("  k count=10000 min=7 max=7 mean=7.00 distinct~1 p50~7 p90~7 p99~7\n"));
+    }
+
+    @Test
+    public void negativeAndOtherValues() throws Exception {
+        String trace = "at fib.js:5\n  watch n = -5\n  watch s = hello\n"
+            + "at fib.js:5\n  watch n = 3\n  watch d = 1.5\n";
+        DbgTraceStats stats = DbgTraceStats.analyze("log.dbg", new StringReader(trace));
+
+        assertEquals(2, stats.records);
+        assertEquals(2, stats.skipped);
+        DbgTraceStats.Variable n = stats.variables.get("n");
+        assertEquals(2, n.count);
+        assertEquals(-5, n.min);
+        assertEquals(3, n.max);
+        assertNull(stats.variables.get("s"));
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        stats.print(new PrintStream(os, true, "UTF-8"));
+        String out = os.toString("UTF-8");
+        assertTrue(out, out.contains("skipped: 2\n"));
+    }
+
+    @Test
+    public void recordsWithoutIntegers() throws Exception {
+        String trace = ""
+            + "at fib.js:5\n  watch d = 2.5\n"
+            + "at fib.js:5\n  watch s = hello\n  watch t = world\n"
+            + "at fib.js:6\n  watch n = 1\n";
+        DbgTraceStats stats = DbgTraceStats.analyze("log.dbg", new StringReader(trace));
+
+        assertEquals(3, stats.records);
+        assertEquals("Records without integers are hits", 2, stats.hits.get("fib.js:5")[0]);
+        assertEquals(3, stats.skipped);
+        assertNull(stats.variables.get("d"));
+        assertEquals(1, stats.variables.get("n").count);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2019, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import java.util.LinkedList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class DbgTraceStoreTest {
+    private static final int RECORDS = 20000;
+    private static List<DbgAt> list;
+    private static DbgTraceStore store;
+
+    @Test
+    public void storeKeepsRecords() throws Exception {
+        DbgTraceStore s = new DbgTraceStore();
+        new DbgParser(new DbgLanguageGrammar(null, "t.dbg", null, s::add)).parseString(
+            "at fib.js:5\n  watch n = 3\n  watch n1\n"
+            + "at fib.js:5\n  watch n1 = 2\n  watch n = 7\n"
+            + "at fib.js:1-3 watch x\n"
+            + "at fib.js:6 dump\n"
+        );
+        s.trim();
+
+        assertEquals(4, s.size());
+        assertEquals("Same location and variables share a shape", s.shape(0), s.shape(1));
+        assertEquals(-1, s.shape(3));
+        assertEquals(new DbgAt("fib.js", 5, s.get(0).actions), s.get(1));
+        DbgAtWatch n = s.get(1).actions.get(0);
+        assertEquals("n", n.variableName);
+        assertEquals(Integer.valueOf(7), n.value);
+        assertNull(s.get(0).actions.get(0).value);
+        assertEquals(3, s.get(2).lastLine);
+        assertTrue(s.get(3).dump);
+    }
+
+    @Test
+    public void footprintPerRecord() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < RECORDS; i++) {
+            sb.append("at src/fib.js:").append(i % 7).append("\n  watch n = ").append(i).append("\n  watch n1 = ").append(i % 100).append('\n');
+        }
+        list = new LinkedList<>();
+        store = new DbgTraceStore();
+        new DbgParser(new DbgLanguageGrammar(null, "log.dbg", null, (at) -> {
+            list.add(at);
+            store.add(at);
+        })).parseString(sb.toString());
+        store.trim();
+        try {
+            HeapFootprint heap = HeapFootprint.dump();
+            long listSize = heap.retainedSize(DbgTraceStoreTest.class, "list");
+            long storeSize = heap.retainedSize(DbgTraceStoreTest.class, "store");
+            assertTrue("Store: " + storeSize + " list: " + listSize, storeSize * 5 <= listSize);
+        } finally {
+            list = null;
+            store = null;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2019, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import com.oracle.truffle.api.Assumption;
+import java.io.ByteArrayOutputStream;
+import java.util.function.Function;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class EnableDisableTest {
+    @Test
+    public void switchWatchpoints() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Context c = Context.newBuilder().allowAllAccess(true).out(os).err(os).build();
+        c.initialize("dbg");
+        Value fib = c.eval(Source.newBuilder("js",
+            "(function fib(n) {\n"
+            + "  if (n < 2) return 1;\n"
+            + "  let n1 = fib(n - 1);\n"
+            + "  let n2 = fib(n - 2);\n"
+            + "  return n1 + n2;\n"
+            + "})\n",
+            "fib.js"
+        ).buildLiteral());
+        Function<Source, ?> insight = c.getEngine().getInstruments().get("insight").lookup(Function.class);
+        insight.apply(Source.newBuilder("dbg",
+            "at fib.js:5 watch n\n"
+            + "at function fib on enter watch n\n", "debug.dbg"
+        ).buildLiteral());
+
+        assertEquals(3, fib.execute(3).asInt());
+        Value watchpoints = c.getBindings("dbg").getMember("watchpoints");
+        assertEquals(2, watchpoints.getArraySize());
+        Value line = watchpoints.getArrayElement(0);
+        Value enter = watchpoints.getArrayElement(1);
+        assertEquals("fib.js:5", line.getMember("location").asString());
+        assertEquals("function fib on enter", enter.getMember("location").asString());
+
+        assertEquals(os.toString("UTF-8"), 2, line.getMember("hits").asLong());
+        assertEquals(5, enter.getMember("hits").asLong());
+
+        line.invokeMember("disable");
+        assertFalse(line.getMember("enabled").asBoolean());
+        os.reset();
+        assertEquals(3, fib.execute(3).asInt());
+        assertFalse(os.toString("UTF-8"), os.toString("UTF-8").contains("at fib.js:5\n"));
+        assertEquals("Disabled watchpoint isn't counted", 2, line.getMember("hits").asLong());
+        assertEquals(10, enter.getMember("hits").asLong());
+
+        line.invokeMember("enable");
+        assertTrue(line.getMember("enabled").asBoolean());
+        os.reset();
+        assertEquals(3, fib.execute(3).asInt());
+        assertTrue(os.toString("UTF-8"), os.toString("UTF-8").contains("at fib.js:5\n"));
+        assertEquals(4, line.getMember("hits").asLong());
+    }
+
+    @Test
+    public void disableReturnWatchpoint() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Context c = Context.newBuilder().allowAllAccess(true).out(os).err(os).build();
+        c.initialize("dbg");
+        Value fib = c.eval(Source.newBuilder("js",
+            "(function fib(n) {\n"
+            + "  if (n < 2) return 1;\n"
+            + "  return fib(n - 1) + fib(n - 2);\n"
+            + "})\n",
+            "fib.js"
+        ).buildLiteral());
+        Function<Source, ?> insight = c.getEngine().getInstruments().get("insight").lookup(Function.class);
+        insight.apply(Source.newBuilder("dbg",
+            "at function fib on return watch result\n", "debug.dbg"
+        ).buildLiteral());
+        c.eval("js", "'load insight'");
+
+        Value ret = c.getBindings("dbg").getMember("watchpoints").getArrayElement(0);
+        ret.invokeMember("disable");
+        os.reset();
+        assertEquals(3, fib.execute(3).asInt());
+        assertFalse(os.toString("UTF-8"), os.toString("UTF-8").contains("watch result"));
+        assertEquals(0, ret.getMember("hits").asLong());
+
+        ret.invokeMember("enable");
+        assertEquals(3, fib.execute(3).asInt());
+        assertTrue(os.toString("UTF-8"), os.toString("UTF-8").contains("watch result = 3"));
+        assertEquals(5, ret.getMember("hits").asLong());
+    }
+
+    @Test
+    public void switchingInvalidatesOnlyItsAssumption() {
+        DbgAt a = new DbgAt("a.js", 1, java.util.Collections.emptyList());
+        DbgAt b = new DbgAt("b.js", 1, java.util.Collections.emptyList());
+        Assumption aEnabled = a.enabledAssumption();
+        Assumption bEnabled = b.enabledAssumption();
+        assertTrue(a.isEnabled());
+        a.setEnabled(false);
+        assertFalse(a.isEnabled());
+        assertFalse("a's compiled code is invalidated", aEnabled.isValid());
+        assertTrue("a's new state is assumed", a.enabledAssumption().isValid());
+        assertTrue("b's compiled code stays", bEnabled.isValid());
+        assertSame(bEnabled, b.enabledAssumption());
+        assertTrue(b.isEnabled());
+        a.setEnabled(true);
+        assertTrue(a.isEnabled());
+        assertTrue(bEnabled.isValid());
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2019, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import java.io.ByteArrayOutputStream;
+import java.util.function.Function;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+public class ExceptionWatchTest {
+    @Test
+    public void localsOfUnwoundFrames() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Context c = Context.newBuilder().allowAllAccess(true).out(os).err(os).build();
+        c.initialize("dbg");
+        Value fn = c.eval(Source.newBuilder("js",
+            "function check(x) {\n"
+            + "  throw new Error('bad ' + x);\n"
+            + "}\n"
+            + "(function fib(n) {\n"
+            + "  let prev = n - 1;\n"
+            + "  if (n < 3) check(prev);\n"
+            + "  return fib(n - 1) + 1;\n"
+            + "})\n",
+            "fail.js"
+        ).buildLiteral());
+        Function<Source, ?> insight = c.getEngine().getInstruments().get("insight").lookup(Function.class);
+
+        insight.apply(Source.newBuilder("dbg",
+            "at function fib on exception watch *\n"
+            + "at function check on exception watch x\n", "fail.dbg"
+        ).buildLiteral());
+        c.eval("js", "'load insight'");
+
+        assertEquals("Nothing recorded without an exception", "", os.toString("UTF-8"));
+        try {
+            fn.execute(4);
+            fail("Should throw");
+        } catch (PolyglotException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("bad 1"));
+        }
+        String trace = os.toString("UTF-8");
+        assertEquals(
+            "at fail.js:2\n  watch x = 1\n"
+            + "at fail.js:6\n  watch n = 2\n  watch prev = 1\n"
+            + "at fail.js:7\n  watch n = 3\n  watch prev = 2\n"
+            + "at fail.js:7\n  watch n = 4\n  watch prev = 3\n",
+            trace
+        );
+
+        try (Context replay = Context.create()) {
+            assertEquals("Replayable", 0, replay.eval(Source.newBuilder("dbg", trace, "replay.dbg").buildLiteral()).asInt());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2019, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import com.oracle.truffle.api.debug.Debugger;
+import com.oracle.truffle.api.debug.DebuggerSession;
+import java.util.ArrayList;
+import java.util.List;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Source;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class FilterTest {
+    private static final String TRACE = ""
+            + "at fib.js:5\n  watch n = 2\n  watch n1 = 1\n"
+            + "at fib.js:3\n  watch n = 3\n"
+            + "at other.js:5\n  watch n = 4\n"
+            + "at fib.js:5\n  watch n = 4\n  watch n1 = 3\n"
+            + "at fib.js:5\n  watch n = 5\n  watch n1 = 5\n";
+
+    @Test
+    public void filterLocations() throws Exception {
+        assertEquals("fib.js:5 fib.js:3 fib.js:5 fib.js:5 ", parse("fib.js"));
+        assertEquals("fib.js:5 fib.js:5 fib.js:5 ", parse("fib.js:4-8"));
+        assertEquals("fib.js:3 other.js:5 ", parse("fib.js:3;other.js"));
+    }
+
+    @Test
+    public void filterValues() throws Exception {
+        assertEquals("fib.js:3 other.js:5 fib.js:5 fib.js:5 ", parse("n>2"));
+        assertEquals("Records without n1 are rejected", "fib.js:5 fib.js:5 ", parse("n>2;n1>0"));
+        assertEquals("fib.js:5 ", parse("fib.js:5;n1=5"));
+    }
+
+    @Test
+    public void functionRecordStartsAfresh() throws Exception {
+        String trace = ""
+            + "at fib.js:5\n  watch n = 4\n"
+            + "at function fib on enter\n  watch m = 1\n";
+        assertEquals("Record without n is rejected", "fib.js:5 ", parse("n>2", trace));
+    }
+
+    @Test
+    public void replayOnlyMatchingRecords() {
+        Context c = Context.newBuilder().allowExperimentalOptions(true).option("dbg.Filter", "fib.js:5;n>=4").build();
+        List<Integer> ns = new ArrayList<>();
+        Debugger dbg = Debugger.find(c.getEngine());
+        DebuggerSession session = dbg.startSession((event) -> {
+            ns.add(event.getTopStackFrame().getScope().getDeclaredValue("n").asInt());
+            event.getSession().suspendNextExecution();
+        });
+        session.suspendNextExecution();
+        c.eval(Source.create("dbg", TRACE));
+        assertEquals("[4, 5]", ns.toString());
+    }
+
+    private static String parse(String filter) throws Exception {
+        return parse(filter, TRACE);
+    }
+
+    private static String parse(String filter, String trace) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        new DbgParser(new DbgLanguageGrammar(null, "trace.dbg", DbgFilter.parse(filter), (at) -> {
+            sb.append(at.file).append(':').append(at.line).append(' ');
+        })).parseString(trace);
+        return sb.toString();
+    }
+}
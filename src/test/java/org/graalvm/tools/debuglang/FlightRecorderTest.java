@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2019, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FlightRecorderTest {
+    private ByteArrayOutputStream os;
+    private Context c;
+    private Value check;
+
+    @Before
+    public void prepareContext() {
+        os = new ByteArrayOutputStream();
+        c = Context.newBuilder().allowAllAccess(true).out(os).err(os).option("dbg.FlightRecorder", "3").build();
+        check = c.eval(Source.newBuilder("js",
+                "(function check(n) {\n"
+                + "  let x = n * 2;\n"
+                + "  if (x > 10) {\n"
+                + "    throw new Error('too big');\n"
+                + "  }\n"
+                + "  return x;\n"
+                + "})\n",
+                "check.js"
+        ).buildLiteral());
+    }
+
+    private void insight(String code) {
+        Function<Source,Closeable> insight = c.getEngine().getInstruments().get("insight").lookup(Function.class);
+        insight.apply(Source.newBuilder("dbg", code, "flight.dbg").buildLiteral());
+    }
+
+    @Test
+    public void dumpOnExplicitRequest() throws Exception {
+        insight("at check.js:3 watch x");
+        for (int i = 1; i <= 5; i++) {
+            check.execute(i);
+        }
+        assertEquals("Nothing written yet", "", os.toString("UTF-8"));
+
+        c.getBindings("dbg").invokeMember("dump");
+        assertEquals(
+            "at check.js:3\n  watch x = 6\n"
+            + "at check.js:3\n  watch x = 8\n"
+            + "at check.js:3\n  watch x = 10\n",
+            os.toString("UTF-8")
+        );
+    }
+
+    @Test
+    public void dumpOnGuestException() throws Exception {
+        insight("at check.js:3 watch x");
+        try {
+            for (int i = 1; ; i++) {
+                check.execute(i);
+            }
+        } catch (PolyglotException ex) {
+            assertTrue(ex.getMessage(), ex.isGuestException());
+        }
+        assertEquals(
+            "at check.js:3\n  watch x = 8\n"
+            + "at check.js:3\n  watch x = 10\n"
+            + "at check.js:3\n  watch x = 12\n",
+            os.toString("UTF-8")
+        );
+    }
+
+    @Test
+    public void dumpAction() throws Exception {
+        insight("at check.js:3 watch x\nat check.js:6 dump\n");
+        assertEquals(2, check.execute(1).asInt());
+        assertEquals("at check.js:3\n  watch x = 2\n", os.toString("UTF-8"));
+        try {
+            check.execute(6);
+            fail("Exception expected");
+        } catch (PolyglotException ex) {
+            assertEquals("Dumped just once", "at check.js:3\n  watch x = 2\nat check.js:3\n  watch x = 12\n", os.toString("UTF-8"));
+        }
+    }
+
+    @Test
+    public void ringsOfFinishedThreadsDropped() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DbgFlightRecorder recorder = new DbgFlightRecorder(3, new DbgOutputSink(out));
+        List<DbgAtWatch> watches = Collections.singletonList(new DbgAtWatch("n", null));
+        for (int i = 0; i < 10; i++) {
+            final int n = i;
+            Thread t = new Thread(() -> recorder.record("pool.js", 1, watches, new Object[] { n }));
+            t.start();
+            t.join();
+        }
+        recorder.dump();
+        assertEquals("Records of finished threads dumped", 10, out.toString("UTF-8").split("at pool.js:1").length - 1);
+        assertEquals("Drained rings of finished threads dropped", 0, recorder.rings());
+    }
+}
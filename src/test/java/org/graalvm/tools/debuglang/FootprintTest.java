@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2019, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import java.io.ByteArrayOutputStream;
+import java.util.function.Function;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Guards the memory needed to parse, register and replay traces. The bounds
+ * are about 1.5 times the sizes measured when they were introduced.
+ */
+public class FootprintTest {
+    private static final int RECORDS = 50000;
+    private static final int WATCHPOINTS = 1000;
+    private static DbgProgramNode program;
+    private static Context context;
+
+    @Test
+    public void retainedSizes() throws Exception {
+        StringBuilder trace = new StringBuilder();
+        for (int i = 0; i < RECORDS; i++) {
+            trace.append("at fib.js:").append(i % 50).append("\n  watch n = ").append(i).append("\n  watch n1 = ").append(i % 10).append('\n');
+        }
+        program = new DbgParser(new DbgLanguageGrammar(null, "log.dbg")).parseString(trace.toString());
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        context = Context.newBuilder().allowAllAccess(true).out(os).err(os).build();
+        Value fib = context.eval(Source.newBuilder("js",
+            "(function fib(n) {\n"
+            + "  if (n < 2) return 1;\n"
+            + "  let n1 = fib(n - 1);\n"
+            + "  let n2 = fib(n - 2);\n"
+            + "  return n1 + n2;\n"
+            + "})\n",
+            "fib.js"
+        ).buildLiteral());
+        StringBuilder watchpoints = new StringBuilder();
+        for (int i = 0; i < WATCHPOINTS; i++) {
+            watchpoints.append("at src").append(i).append("/*.js:").append(i).append("-").append(i + 10).append(" watch n watch n1\n");
+        }
+        watchpoints.append("at fib.js:5 watch n watch n1\n");
+        Function<Source, ?> insight = context.getEngine().getInstruments().get("insight").lookup(Function.class);
+        insight.apply(Source.newBuilder("dbg", watchpoints.toString(), "many.dbg").buildLiteral());
+        assertEquals(8, fib.execute(5).asInt());
+        context.eval(Source.newBuilder("dbg", trace.toString(), "replay.dbg").buildLiteral());
+
+        try {
+            HeapFootprint heap = HeapFootprint.dump();
+            long parsed = heap.retainedSize(FootprintTest.class, "program");
+            long at = heap.maxRetainedSize(DbgAt.class);
+            long watch = heap.maxRetainedSize(DbgAtWatch.class);
+            long node = heap.maxRetainedSize(DbgNodeAt.class);
+            assertBound("bytes per parsed record", parsed / RECORDS, 48);
+            assertBound("DbgAt", at, 640);
+            assertBound("DbgAtWatch", watch, 192);
+            assertBound("DbgNodeAt", node, 2048);
+        } finally {
+            program = null;
+            context.close();
+            context = null;
+        }
+    }
+
+    private static void assertBound(String what, long size, long bound) {
+        assertTrue(what + " found in the heap", size > 0);
+        assertTrue(what + " retains " + size + " bytes, at most " + bound + " expected", size <= bound);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2019, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import java.io.ByteArrayOutputStream;
+import java.util.function.Function;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class FunctionWatchTest {
+    @Test
+    public void enterAndReturn() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Context c = Context.newBuilder().allowAllAccess(true).out(os).err(os).build();
+        c.initialize("dbg");
+        Value fib = c.eval(Source.newBuilder("js",
+            "(function fib(n) {\n"
+            + "  if (n < 2) return 1;\n"
+            + "  let n1 = fib(n - 1);\n"
+            + "  let n2 = fib(n - 2);\n"
+            + "  return n1 + n2;\n"
+            + "})\n",
+            "fib.js"
+        ).buildLiteral());
+        Function<Source, ?> insight = c.getEngine().getInstruments().get("insight").lookup(Function.class);
+
+        insight.apply(Source.newBuilder("dbg",
+            "at function fib on enter watch n\n"
+            + "at function fib on return watch n watch result\n", "fn.dbg"
+        ).buildLiteral());
+
+        assertEquals(2, fib.execute(2).asInt());
+        assertEquals(
+            "at fib.js:1\n  watch n = 2\n"
+            + "at fib.js:1\n  watch n = 1\n"
+            + "at fib.js:1\n  watch result = 1\n  watch n = 1\n"
+            + "at fib.js:1\n  watch n = 0\n"
+            + "at fib.js:1\n  watch result = 1\n  watch n = 0\n"
+            + "at fib.js:1\n  watch result = 2\n  watch n = 2\n",
+            os.toString("UTF-8")
+        );
+    }
+
+    @Test
+    public void otherFunctionsIgnored() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Context c = Context.newBuilder().allowAllAccess(true).out(os).err(os).build();
+        c.initialize("dbg");
+        Value fn = c.eval(Source.newBuilder("js",
+            "function fibonacci(n) {\n"
+            + "  return n;\n"
+            + "}\n"
+            + "(function fib(n) {\n"
+            + "  return fibonacci(n) + 1;\n"
+            + "})\n",
+            "names.js"
+        ).buildLiteral());
+        Function<Source, ?> insight = c.getEngine().getInstruments().get("insight").lookup(Function.class);
+
+        insight.apply(Source.newBuilder("dbg",
+            "at function fib on return watch result\n", "fn.dbg"
+        ).buildLiteral());
+
+        assertEquals(4, fn.execute(3).asInt());
+        assertEquals("at names.js:4\n  watch result = 4\n", os.toString("UTF-8"));
+    }
+
+    @Test
+    public void returnRecordedOnEveryCall() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Context c = Context.newBuilder().allowAllAccess(true).out(os).err(os).build();
+        c.initialize("dbg");
+        Value sq = c.eval(Source.newBuilder("js",
+            "(function sq(n) {\n"
+            + "  let s = n * n;\n"
+            + "  return s;\n"
+            + "})\n",
+            "sq.js"
+        ).buildLiteral());
+        Function<Source, ?> insight = c.getEngine().getInstruments().get("insight").lookup(Function.class);
+        insight.apply(Source.newBuilder("dbg",
+            "at function sq on return watch *\n", "fn.dbg"
+        ).buildLiteral());
+
+        StringBuilder expected = new StringBuilder();
+        for (int n = 0; n < 100; n++) {
+            assertEquals(n * n, sq.execute(n).asInt());
+            expected.append("at sq.js:1\n  watch result = ").append(n * n)
+                .append("\n  watch n = ").append(n)
+                .append("\n  watch s = ").append(n * n).append('\n');
+        }
+        assertEquals(expected.toString(), os.toString("UTF-8"));
+    }
+}
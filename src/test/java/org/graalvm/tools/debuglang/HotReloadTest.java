@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2019, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.util.function.Function;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class HotReloadTest {
+    @Test
+    public void reloadOnlyChangedLocations() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Context c = Context.newBuilder().allowAllAccess(true).out(os).err(os).build();
+        Source fibSource = Source.newBuilder("js",
+                "(function fib(n) {\n"
+                + "  if (n < 2) return 1;\n"
+                + "  let n1 = fib(n - 1);\n"
+                + "  let n2 = fib(n - 2);\n"
+                + "  return n1 + n2;\n"
+                + "})\n",
+                "fib.js"
+        ).buildLiteral();
+
+        Value fib = c.eval(fibSource);
+        Function<Source,Closeable> insight = c.getEngine().getInstruments().get("insight").lookup(Function.class);
+
+        insight.apply(Source.newBuilder("dbg",
+            "at fib.js:5 watch n\n"
+            + "at fib.js:3 watch n\n", "debug.dbg"
+        ).buildLiteral());
+
+        assertEquals(3, fib.execute(3).asInt());
+        String first = os.toString("UTF-8");
+        assertEquals("Two calls reach line 5:\n" + first, 2, count(first, "at fib.js:5\n"));
+        assertTrue(first, first.contains("at fib.js:3\n"));
+        assertFalse(first, first.contains("at fib.js:4\n"));
+
+        os.reset();
+        insight.apply(Source.newBuilder("dbg",
+            "at fib.js:5 watch n\n"
+            + "at fib.js:4 watch n1\n", "debug.dbg"
+        ).buildLiteral());
+
+        assertEquals(3, fib.execute(3).asInt());
+        String second = os.toString("UTF-8");
+        assertEquals("Unchanged location isn't registered twice:\n" + second, 2, count(second, "at fib.js:5\n"));
+        assertTrue(second, second.contains("at fib.js:4\n"));
+        assertFalse("Removed location is detached:\n" + second, second.contains("at fib.js:3\n"));
+    }
+
+    private static int count(String text, String pattern) {
+        int cnt = 0;
+        for (int at = text.indexOf(pattern); at >= 0; at = text.indexOf(pattern, at + 1)) {
+            cnt++;
+        }
+        return cnt;
+    }
+}
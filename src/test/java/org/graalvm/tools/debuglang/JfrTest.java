@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2019, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Function;
+import jdk.jfr.Recording;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class JfrTest {
+    @Test
+    public void recordingConvertsToSameTrace() throws Exception {
+        String expected = runFib(Context.newBuilder());
+        assertTrue(expected, expected.startsWith("at fib.js:5\n"));
+
+        Path jfr = Files.createTempFile("watch", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(DbgJfrEvent.NAME);
+            recording.start();
+            String out = runFib(Context.newBuilder().option("dbg.JFR", "true"));
+            assertEquals("Nothing written to output", "", out);
+            recording.stop();
+            recording.dump(jfr);
+        }
+
+        StringWriter converted = new StringWriter();
+        DbgJfrConverter.convert(jfr, converted);
+        Files.delete(jfr);
+        assertEquals(expected, converted.toString());
+    }
+
+    @Test
+    public void contextsDontShareHits() throws Exception {
+        Path jfr = Files.createTempFile("contexts", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(DbgJfrEvent.NAME);
+            recording.start();
+            for (String name : new String[] { "a.js", "b.js" }) {
+                try (Context c = Context.newBuilder().allowAllAccess(true).option("dbg.JFR", "true").build()) {
+                    Function<Source,Closeable> insight = c.getEngine().getInstruments().get("insight").lookup(Function.class);
+                    insight.apply(Source.newBuilder("dbg", "at " + name + ":3 watch x", "jfr.dbg").buildLiteral());
+                    c.eval("js", "'load insight'");
+                    c.eval(Source.newBuilder("js", "(function() {\n  let x = 42;\n  return x;\n})()\n", name).buildLiteral());
+                }
+            }
+            recording.stop();
+            recording.dump(jfr);
+        }
+
+        StringWriter converted = new StringWriter();
+        DbgJfrConverter.convert(jfr, converted);
+        Files.delete(jfr);
+        assertEquals("at a.js:3\n  watch x = 42\nat b.js:3\n  watch x = 42\n", converted.toString());
+    }
+
+    private static String runFib(Context.Builder builder) throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (Context c = builder.allowAllAccess(true).out(os).build()) {
+            Value fib = c.eval(Source.newBuilder("js",
+                    "(function fib(n) {\n"
+                    + "  if (n < 2) return 1;\n"
+                    + "  let n1 = fib(n - 1);\n"
+                    + "  let n2 = fib(n - 2);\n"
+                    + "  return n1 + n2;\n"
+                    + "})\n",
+                    "fib.js"
+            ).buildLiteral());
+            Function<Source,Closeable> insight = c.getEngine().getInstruments().get("insight").lookup(Function.class);
+            insight.apply(Source.newBuilder("dbg", "at fib.js:5 watch n watch n1 watch n2", "jfr.dbg").buildLiteral());
+            assertEquals(21, fib.execute(7).asInt());
+        }
+        return os.toString("UTF-8");
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2019, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.util.function.Function;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class SharedEngineTest {
+    private static final Source FIB = Source.newBuilder("js",
+            "(function fib(n) {\n"
+            + "  if (n < 2) return 1;\n"
+            + "  let n1 = fib(n - 1);\n"
+            + "  let n2 = fib(n - 2);\n"
+            + "  return n1 + n2;\n"
+            + "})\n",
+            "fib.js"
+    ).buildLiteral();
+
+    @Test
+    public void contextsOfSharedEngineRecordSeparately() throws Exception {
+        try (Engine engine = Engine.create()) {
+            Function<Source,Closeable> insight = engine.getInstruments().get("insight").lookup(Function.class);
+            insight.apply(Source.newBuilder("dbg", "at fib.js:5 watch n", "shared.dbg").buildLiteral());
+
+            ByteArrayOutputStream os1 = new ByteArrayOutputStream();
+            ByteArrayOutputStream os2 = new ByteArrayOutputStream();
+            Context c1 = Context.newBuilder().engine(engine).allowAllAccess(true).out(os1).build();
+            Context c2 = Context.newBuilder().engine(engine).allowAllAccess(true).out(os2).build();
+            c1.initialize("dbg");
+            c2.initialize("dbg");
+
+            Value fib1 = c1.eval(FIB);
+            Value fib2 = c2.eval(FIB);
+
+            assertEquals(2, fib1.execute(2).asInt());
+            assertEquals(3, fib2.execute(3).asInt());
+
+            assertEquals("at fib.js:5\n  watch n = 2\n", os1.toString("UTF-8"));
+            String out2 = os2.toString("UTF-8");
+            assertEquals("at fib.js:5\n  watch n = 2\nat fib.js:5\n  watch n = 3\n", out2);
+
+            Source replay = Source.newBuilder("dbg", out2, "replay.dbg").buildLiteral();
+            assertEquals(0, c1.eval(replay).asInt());
+            assertEquals(0, c2.eval(replay).asInt());
+            c1.close();
+            c2.close();
+        }
+    }
+}
@@ -51,7 +51,9 @@ import org.graalvm.polyglot.Instrument;
 import org.graalvm.polyglot.Source;
 import org.graalvm.polyglot.Value;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import org.junit.Test;
 
 public class WatchTest {
@@ -106,4 +108,104 @@ public class WatchTest {
         assertEquals("Replayed OK", 7, allN[0]);
         assertEquals(21, allN[1] + allN[2]);
     }
+
+    @Test
+    public void memberPath() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Context c = Context.newBuilder().allowAllAccess(true).out(os).err(os).build();
+        Value handle = c.eval(Source.newBuilder("js",
+                "(function handle(req) {\n"
+                + "  let status = req.user.id > 0 ? 200 : 403;\n"
+                + "  return status;\n"
+                + "})\n",
+                "handle.js"
+        ).buildLiteral());
+        Function<Source,Closeable> insight = c.getEngine().getInstruments().get("insight").lookup(Function.class);
+
+        insight.apply(Source.newBuilder("dbg",
+            "at handle.js:3 watch req.user.id watch req.user.name.missing", "debug.dbg"
+        ).buildLiteral());
+
+        Value req = c.eval("js", "({ user : { id : 42 } })");
+        assertEquals(200, handle.execute(req).asInt());
+        assertEquals("at handle.js:3\n  watch req.user.id = 42\n", os.toString("UTF-8"));
+    }
+
+    @Test
+    public void watchAll() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Context c = Context.newBuilder().allowAllAccess(true).out(os).err(os).build();
+        Value fib = c.eval(Source.newBuilder("js",
+                "(function fib(n) {\n"
+                + "  if (n < 2) return 1;\n"
+                + "  let n1 = fib(n - 1);\n"
+                + "  let n2 = fib(n - 2);\n"
+                + "  return n1 + n2;\n"
+                + "})\n",
+                "fib.js"
+        ).buildLiteral());
+        Function<Source,Closeable> insight = c.getEngine().getInstruments().get("insight").lookup(Function.class);
+
+        insight.apply(Source.newBuilder("dbg",
+            "at fib.js:5 watch *", "debug.dbg"
+        ).buildLiteral());
+
+        assertEquals(3, fib.execute(3).asInt());
+        String trace = os.toString("UTF-8");
+        assertTrue(trace, trace.endsWith("at fib.js:5\n  watch n = 3\n  watch n1 = 2\n  watch n2 = 1\n"));
+        assertFalse("Only values a trace can replay: " + trace, trace.contains("watch fib"));
+
+        final int[] n1 = { 0 };
+        Debugger dbg = Debugger.find(c.getEngine());
+        DebuggerSession dbgSession = dbg.startSession((event) -> {
+            DebugValue n = event.getTopStackFrame().getScope().getDeclaredValue("n");
+            if (n.asInt() == 3) {
+                n1[0] = event.getTopStackFrame().getScope().getDeclaredValue("n1").asInt();
+            } else {
+                event.getSession().suspendNextExecution();
+            }
+        });
+        dbgSession.suspendNextExecution();
+        c.eval(Source.newBuilder("dbg", trace, "replay.dbg").buildLiteral());
+        assertEquals("Replayed OK", 2, n1[0]);
+    }
+
+    @Test
+    public void watchAllReplaysNegatives() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Context c = Context.newBuilder().allowAllAccess(true).out(os).err(os).build();
+        Value neg = c.eval(Source.newBuilder("js",
+                "(function neg(n) {\n"
+                + "  let m = -n;\n"
+                + "  let min = -2147483648;\n"
+                + "  return m;\n"
+                + "})\n",
+                "neg.js"
+        ).buildLiteral());
+        Function<Source,Closeable> insight = c.getEngine().getInstruments().get("insight").lookup(Function.class);
+
+        insight.apply(Source.newBuilder("dbg",
+            "at neg.js:4 watch *", "debug.dbg"
+        ).buildLiteral());
+
+        assertEquals(-3, neg.execute(3).asInt());
+        String trace = os.toString("UTF-8");
+        assertTrue(trace, trace.endsWith("at neg.js:4\n  watch m = -3\n  watch min = -2147483648\n  watch n = 3\n"));
+
+        final int[] values = { 0, 0 };
+        Debugger dbg = Debugger.find(c.getEngine());
+        DebuggerSession dbgSession = dbg.startSession((event) -> {
+            DebugValue m = event.getTopStackFrame().getScope().getDeclaredValue("m");
+            if (m != null) {
+                values[0] = m.asInt();
+                values[1] = event.getTopStackFrame().getScope().getDeclaredValue("min").asInt();
+            } else {
+                event.getSession().suspendNextExecution();
+            }
+        });
+        dbgSession.suspendNextExecution();
+        c.eval(Source.newBuilder("dbg", trace, "replay.dbg").buildLiteral());
+        assertEquals("Replayed m", -3, values[0]);
+        assertEquals("Replayed min", Integer.MIN_VALUE, values[1]);
+    }
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2019, 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.tools.debuglang;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class WildcardTest {
+    @Test
+    public void globAndLineRange() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Context c = Context.newBuilder().allowAllAccess(true).out(os).err(os).build();
+        Value fib = c.eval(fibSource("src/fib.js"));
+        Function<Source, ?> insight = c.getEngine().getInstruments().get("insight").lookup(Function.class);
+
+        insight.apply(Source.newBuilder("dbg",
+            "at src/*.js:3-4 watch n\n"
+            + "at lib/*.js:* watch n\n", "range.dbg"
+        ).buildLiteral());
+
+        assertEquals(2, fib.execute(2).asInt());
+        assertEquals(
+            "at src/fib.js:3\n  watch n = 2\n"
+            + "at src/fib.js:4\n  watch n = 2\n",
+            os.toString("UTF-8")
+        );
+    }
+
+    @Test
+    public void anyLine() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Context c = Context.newBuilder().allowAllAccess(true).out(os).err(os).build();
+        Value fib = c.eval(fibSource("src/fib.js"));
+        Function<Source, ?> insight = c.getEngine().getInstruments().get("insight").lookup(Function.class);
+
+        insight.apply(Source.newBuilder("dbg",
+            "at fib.js:* watch n\n"
+            + "at fib.js:2 watch n\n", "any.dbg"
+        ).buildLiteral());
+
+        assertEquals(1, fib.execute(1).asInt());
+        String record = "at src/fib.js:2\n  watch n = 1\n";
+        assertEquals("Both locations hit both statements of line 2", record + record + record + record, os.toString("UTF-8"));
+    }
+
+    @Test
+    public void globPatterns() {
+        assertTrue(new DbgGlob("src/*.js").matches("/home/me/src/fib.js"));
+        assertTrue(new DbgGlob("*.js").matches("fib.js"));
+        assertFalse(new DbgGlob("src/*.js").matches("src/lib/fib.js"));
+        assertTrue(new DbgGlob("src/**.js").matches("src/lib/fib.js"));
+        assertTrue(new DbgGlob("fib.?s").matches("fib.js"));
+        assertFalse(new DbgGlob("fib.js").matches("nofib.js"));
+        assertTrue(new DbgGlob("fib.js").matches("src/fib.js"));
+    }
+
+    @Test
+    public void lineIndex() {
+        DbgAt a = new DbgAt("a.js", 10, 40, Collections.emptyList(), false);
+        DbgAt b = new DbgAt("a.js", 20, 20, Collections.emptyList(), false);
+        DbgAt c = new DbgAt("a.js", 30, Integer.MAX_VALUE, Collections.emptyList(), false);
+        DbgLineIndex index = new DbgLineIndex(Arrays.asList(a, b, c));
+
+        assertEquals(0, index.find(9).length);
+        assertArrayEquals(new DbgAt[] { a }, index.find(10));
+        assertArrayEquals(new DbgAt[] { a, b }, index.find(20));
+        assertArrayEquals(new DbgAt[] { a }, index.find(21));
+        assertArrayEquals(new DbgAt[] { a, c }, index.find(40));
+        assertArrayEquals(new DbgAt[] { c }, index.find(100000));
+    }
+
+    @Test
+    public void parseLocations() throws Exception {
+        List<DbgAt> ats = new ArrayList<>();
+        new DbgParser(new DbgLanguageGrammar(null, "p.dbg", null, ats::add)).parseString(
+            "at src/*.js:10-40 watch x\n"
+            + "at fib.js:* dump\n"
+        );
+        assertEquals(2, ats.size());
+        assertEquals("src/*.js", ats.get(0).file);
+        assertEquals(10, ats.get(0).line);
+        assertEquals(40, ats.get(0).lastLine);
+        assertEquals("fib.js", ats.get(1).file);
+        assertEquals(1, ats.get(1).line);
+        assertEquals(Integer.MAX_VALUE, ats.get(1).lastLine);
+        assertTrue(ats.get(1).dump);
+    }
+
+    private static Source fibSource(String name) {
+        return Source.newBuilder("js",
+            "(function fib(n) {\n"
+            + "  if (n < 2) return 1;\n"
+            + "  let n1 = fib(n - 1);\n"
+            + "  let n2 = fib(n - 2);\n"
+            + "  return n1 + n2;\n"
+            + "})\n",
+            name
+        ).buildLiteral();
+    }
+}